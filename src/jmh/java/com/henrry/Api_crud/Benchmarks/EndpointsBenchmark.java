@@ -0,0 +1,86 @@
+package com.henrry.Api_crud.Benchmarks;
+
+import com.henrry.Api_crud.ApiCrudApplication;
+import com.henrry.Api_crud.Models.TokenAcceso;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia de extremo a extremo: la aplicación completa se levanta en un puerto local aleatorio
+ * y cada solicitud pasa por Netty, la cadena de seguridad, el controlador y la serialización.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndpointsBenchmark {
+
+    private ConfigurableApplicationContext contexto;
+    private WebClient cliente;
+    private String token;
+
+    @Setup
+    public void iniciar() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        contexto = new SpringApplicationBuilder(ApiCrudApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run();
+        String puerto = contexto.getEnvironment().getProperty("local.server.port");
+        cliente = WebClient.builder().baseUrl("http://localhost:" + puerto).build();
+        token = cliente.post().uri("/api/auth/token")
+                .headers(h -> h.setBasicAuth("admin", "admin123"))
+                .retrieve()
+                .bodyToMono(TokenAcceso.class)
+                .block()
+                .getToken();
+    }
+
+    @TearDown
+    public void detener() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public String saludoPublico() {
+        return cliente.get().uri("/public/api/saludo")
+                .header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+    }
+
+    @Benchmark
+    public String productoConAutenticacionBasica() {
+        return cliente.get().uri("/api/productos/1")
+                .headers(h -> h.setBasicAuth("admin", "admin123"))
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+    }
+
+    @Benchmark
+    public String pedidosConToken() {
+        return cliente.get().uri("/api/pedidos?limit=10")
+                .headers(h -> h.setBearerAuth(token))
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+    }
+}
@@ -0,0 +1,67 @@
+package com.henrry.Api_crud.Benchmarks;
+
+import com.henrry.Api_crud.Config.AcceptLanguageLocaleResolver;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolución del idioma a partir de 'Accept-Language' y conversión de precios por idioma,
+ * que se ejecutan en cada solicitud.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdiomaYPrecioBenchmark {
+
+    @Param({"es", "fr-CH, fr;q=0.9, en;q=0.8, de;q=0.7, *;q=0.5", "de-DE"})
+    private String acceptLanguage;
+
+    private AcceptLanguageLocaleResolver resolverConCache;
+    private ConversionMonedaService conversionMoneda;
+    private final BigDecimal precioBase = new BigDecimal("199.99");
+
+    @Setup
+    public void preparar() {
+        resolverConCache = new AcceptLanguageLocaleResolver(new String[]{"es", "en", "fr"}, Locale.ENGLISH, 256);
+        conversionMoneda = new ConversionMonedaService(new ClassPathResource("tasas-cambio.properties"), evento -> { });
+    }
+
+    /**
+     * Caso habitual: el valor del encabezado ya está en la caché.
+     */
+    @Benchmark
+    public Locale resolverIdioma() {
+        return resolverConCache.resolver(acceptLanguage);
+    }
+
+    /**
+     * Sin caché: se analiza el encabezado completo en cada llamada.
+     */
+    @Benchmark
+    public Locale resolverIdiomaSinCache() {
+        return new AcceptLanguageLocaleResolver(new String[]{"es", "en", "fr"}, Locale.ENGLISH, 1).resolver(acceptLanguage);
+    }
+
+    @Benchmark
+    public double calcularPrecioPorIdioma() {
+        return conversionMoneda.calcularPrecioPorIdioma(precioBase, Locale.FRENCH);
+    }
+}
@@ -0,0 +1,87 @@
+package com.henrry.Api_crud.Benchmarks;
+
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Persistence.RegistroEscrituraAnticipada;
+import com.henrry.Api_crud.Service.ProductoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo de arranque con el registro de cambios: abrir el registro, leer la instantánea y los
+ * segmentos posteriores y reconstruir el catálogo en memoria.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecuperacionBenchmark {
+
+    @Param({"1000000"})
+    private int tamano;
+
+    /**
+     * Con instantánea se compacta todo antes de medir; sin ella se reproduce el registro completo.
+     */
+    @Param({"true", "false"})
+    private boolean instantanea;
+
+    private Path directorio;
+
+    @Setup
+    public void preparar() throws IOException {
+        directorio = Files.createTempDirectory("wal-benchmark");
+        try (RegistroEscrituraAnticipada registro = abrir()) {
+            ProductoService productoService = new ProductoService(registro);
+            for (int inicio = 0; inicio < tamano; inicio += 10_000) {
+                List<Producto> bloque = new ArrayList<>();
+                for (int i = inicio; i < Math.min(inicio + 10_000, tamano); i++) {
+                    bloque.add(new Producto(null, "Producto " + i, 10.0 + i % 1000));
+                }
+                productoService.agregarProductos(bloque, Locale.ENGLISH).blockLast();
+            }
+            if (instantanea) {
+                registro.compactar().join();
+            }
+        }
+    }
+
+    /**
+     * Cada medición empieza sin la basura de la anterior, como un arranque en una JVM nueva.
+     */
+    @Setup(Level.Iteration)
+    public void limpiar() {
+        System.gc();
+    }
+
+    @Benchmark
+    public int recuperar() throws IOException {
+        try (RegistroEscrituraAnticipada registro = abrir()) {
+            return new ProductoService(registro).contarProductos();
+        }
+    }
+
+    private RegistroEscrituraAnticipada abrir() throws IOException {
+        return new RegistroEscrituraAnticipada(directorio, 64 << 20, Integer.MAX_VALUE, Duration.ofHours(1));
+    }
+}
@@ -0,0 +1,44 @@
+package com.henrry.Api_crud.Benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización JSON de Pedido y Producto con la misma configuración de Jackson que usa Spring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializacionBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Pedido pedido = new Pedido(1L, "Cliente 1", "Producto 1", 2, 99.99);
+    private final Producto producto = new Producto(2L, "Téléviseur Samsung", 1299.99);
+
+    @Benchmark
+    public byte[] serializarPedido() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pedido);
+    }
+
+    @Benchmark
+    public byte[] serializarProducto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(producto);
+    }
+}
@@ -0,0 +1,127 @@
+package com.henrry.Api_crud.Benchmarks;
+
+import com.henrry.Api_crud.Models.FiltroPedido;
+import com.henrry.Api_crud.Models.FiltroProducto;
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operaciones de ProductoService y PedidoService (obtener por id, listar una página y actualizar)
+ * con catálogos de distintos tamaños. Los servicios se crean sin Spring y sin registro de cambios
+ * para medir solo el costo en memoria.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiciosBenchmark {
+
+    private static final Locale LOCALE = Locale.ENGLISH;
+    private static final int PAGINA = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    private int tamano;
+
+    private ProductoService productoService;
+    private PedidoService pedidoService;
+    private final FiltroProducto sinFiltroProducto = new FiltroProducto();
+    private final FiltroPedido sinFiltroPedido = new FiltroPedido();
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        productoService = new ProductoService(RegistroCambios.ninguno());
+        pedidoService = new PedidoService(new ConversionMonedaService(new ClassPathResource("tasas-cambio.properties"), evento -> { }),
+                productoService, RegistroCambios.ninguno());
+        // Los servicios ya traen 3 elementos de ejemplo
+        for (int i = 3; i < tamano; i++) {
+            productoService.agregarProducto(new Producto(null, "Producto " + i, 10.0 + i % 1000), LOCALE).block();
+            pedidoService.agregarPedido(new Pedido(null, "Cliente " + i % 1000, "Producto " + i % 100, 1 + i % 10, 10.0 + i % 1000), LOCALE).block();
+        }
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, tamano + 1);
+    }
+
+    @Benchmark
+    public Producto obtenerProductoPorId() {
+        return productoService.obtenerProductoPorId(idAleatorio(), LOCALE).block();
+    }
+
+    @Benchmark
+    public List<Producto> listarPaginaDeProductos() {
+        return productoService.listarProductos(LOCALE, sinFiltroProducto, idAleatorio(), PAGINA).collectList().block();
+    }
+
+    @Benchmark
+    public Producto actualizarProducto() {
+        long id = idAleatorio();
+        return productoService.actualizarProducto(new Producto(id, "Producto " + id, 20.0), LOCALE).block();
+    }
+
+    /**
+     * Una palabra completa muy frecuente ("producto") y un prefijo numérico poco frecuente: se recorre la
+     * unión de las palabras con el prefijo, que es la lista más corta.
+     */
+    @Benchmark
+    public List<Producto> buscarProductos() {
+        return productoService.buscarProductos("producto " + idAleatorio(), LOCALE, null, PAGINA).collectList().block();
+    }
+
+    /**
+     * Autocompletar con dos letras: la unión de muchas palabras se consume solo hasta llenar la página.
+     */
+    @Benchmark
+    public List<Producto> autocompletarProductos() {
+        return productoService.buscarProductos("pr", LOCALE, idAleatorio(), PAGINA).collectList().block();
+    }
+
+    /**
+     * Autocompletar con un solo carácter: "1" abarca más de cien mil palabras numéricas con el
+     * catálogo grande, así que en lugar de unirlas se recorre la lista de su inicial.
+     */
+    @Benchmark
+    public List<Producto> autocompletarConUnCaracter() {
+        return productoService.buscarProductos("1", LOCALE, idAleatorio(), PAGINA).collectList().block();
+    }
+
+    @Benchmark
+    public Pedido obtenerPedidoPorId() {
+        return pedidoService.obtenerPedidoPorId(idAleatorio(), LOCALE).block();
+    }
+
+    @Benchmark
+    public List<Pedido> listarPaginaDePedidos() {
+        return pedidoService.listarPedidos(LOCALE, sinFiltroPedido, idAleatorio(), PAGINA).collectList().block();
+    }
+
+    @Benchmark
+    public Pedido actualizarPedido() {
+        long id = idAleatorio();
+        return pedidoService.actualizarPedido(new Pedido(id, "Cliente " + id % 1000, "Producto " + id % 100, 2, 20.0), LOCALE).block();
+    }
+}
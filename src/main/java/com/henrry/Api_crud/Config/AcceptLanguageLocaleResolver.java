@@ -0,0 +1,159 @@
+package com.henrry.Api_crud.Config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.i18n.LocaleContextResolver;
+
+import java.util.Locale;
+
+/**
+ * Resuelve el idioma de cada solicitud a partir del parámetro "lang" o del encabezado
+ * 'Accept-Language', respetando los pesos q contra la lista de idiomas soportados.
+ * El encabezado se recorre carácter a carácter (sin expresiones regulares) y el resultado
+ * se memoriza en una caché acotada, porque en la práctica llegan pocas decenas de valores distintos.
+ */
+public class AcceptLanguageLocaleResolver implements LocaleContextResolver {
+
+    private final Locale[] soportados;
+    private final Locale porDefecto;
+    private final Cache<String, Locale> cache;
+
+    public AcceptLanguageLocaleResolver(String[] idiomasSoportados, Locale porDefecto, long maximoEntradas) {
+        this.soportados = new Locale[idiomasSoportados.length];
+        for (int i = 0; i < idiomasSoportados.length; i++) {
+            this.soportados[i] = Locale.forLanguageTag(idiomasSoportados[i]);
+        }
+        this.porDefecto = porDefecto;
+        this.cache = Caffeine.newBuilder().maximumSize(maximoEntradas).build();
+    }
+
+    @Override
+    public LocaleContext resolveLocaleContext(ServerWebExchange exchange) {
+        Locale locale = resolverSolicitud(exchange.getRequest());
+        return () -> locale;
+    }
+
+    @Override
+    public void setLocaleContext(ServerWebExchange exchange, LocaleContext localeContext) {
+        throw new UnsupportedOperationException(
+                "No se puede cambiar el idioma de la solicitud: se resuelve con 'Accept-Language' o 'lang'");
+    }
+
+    /**
+     * Resuelve el idioma de una solicitud: primero el parámetro "lang" y, si no viene, 'Accept-Language'.
+     *
+     * @param request La solicitud HTTP.
+     * @return Uno de los locales soportados.
+     */
+    public Locale resolverSolicitud(ServerHttpRequest request) {
+        String lang = request.getQueryParams().getFirst("lang");
+        if (lang == null || lang.isEmpty()) {
+            lang = request.getHeaders().getFirst(HttpHeaders.ACCEPT_LANGUAGE);
+        }
+        return resolver(lang);
+    }
+
+    /**
+     * Devuelve el idioma soportado con mayor peso q en el encabezado, o el idioma por defecto.
+     *
+     * @param acceptLanguage Valor del encabezado 'Accept-Language' (puede ser nulo).
+     * @return Uno de los locales soportados.
+     */
+    public Locale resolver(String acceptLanguage) {
+        if (acceptLanguage == null || acceptLanguage.isBlank()) {
+            return porDefecto;
+        }
+        return cache.get(acceptLanguage, this::analizar);
+    }
+
+    /**
+     * Recorre los rangos separados por comas, por ejemplo "fr;q=0.1, es-ES, en;q=0.5".
+     * Ante pesos iguales gana el primero que aparece.
+     */
+    private Locale analizar(String header) {
+        Locale mejor = null;
+        double mejorPeso = 0;
+        int longitud = header.length();
+        int inicio = 0;
+        while (inicio < longitud) {
+            int fin = header.indexOf(',', inicio);
+            if (fin < 0) {
+                fin = longitud;
+            }
+            int parametros = header.indexOf(';', inicio);
+            if (parametros < 0 || parametros > fin) {
+                parametros = fin;
+            }
+            Locale candidato = idiomaSoportado(header, inicio, parametros);
+            if (candidato != null) {
+                double peso = peso(header, parametros, fin);
+                if (peso > mejorPeso) {
+                    mejor = candidato;
+                    mejorPeso = peso;
+                }
+            }
+            inicio = fin + 1;
+        }
+        return mejor != null ? mejor : porDefecto;
+    }
+
+    /**
+     * Compara la subetiqueta principal del rango (lo que va antes de '-') con los idiomas soportados.
+     * El comodín '*' equivale al idioma por defecto.
+     */
+    private Locale idiomaSoportado(String header, int inicio, int fin) {
+        while (inicio < fin && header.charAt(inicio) == ' ') {
+            inicio++;
+        }
+        while (fin > inicio && header.charAt(fin - 1) == ' ') {
+            fin--;
+        }
+        int principal = inicio;
+        while (principal < fin && header.charAt(principal) != '-' && header.charAt(principal) != '_') {
+            principal++;
+        }
+        int largo = principal - inicio;
+        if (largo == 1 && header.charAt(inicio) == '*') {
+            return porDefecto;
+        }
+        for (Locale soportado : soportados) {
+            String idioma = soportado.getLanguage();
+            if (idioma.length() == largo && header.regionMatches(true, inicio, idioma, 0, largo)) {
+                return soportado;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lee el parámetro "q" de un rango. Sin "q" el peso es 1; un valor inválido descarta el rango.
+     */
+    private static double peso(String header, int inicio, int fin) {
+        int parametro = inicio;
+        while (parametro < fin) {
+            int siguiente = header.indexOf(';', parametro + 1);
+            if (siguiente < 0 || siguiente > fin) {
+                siguiente = fin;
+            }
+            int desde = parametro + 1;
+            while (desde < siguiente && header.charAt(desde) == ' ') {
+                desde++;
+            }
+            if (desde + 1 < siguiente && (header.charAt(desde) == 'q' || header.charAt(desde) == 'Q')
+                    && header.charAt(desde + 1) == '=') {
+                try {
+                    double q = Double.parseDouble(header.substring(desde + 2, siguiente).trim());
+                    return q < 0 || q > 1 ? 0 : q;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+            parametro = siguiente;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,92 @@
+package com.henrry.Api_crud.Config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Guarda en caché las autenticaciones HTTP Basic ya verificadas para no ejecutar BCrypt
+ * en cada solicitud. La clave es un HMAC-SHA256 de usuario y contraseña, nunca la contraseña
+ * en claro; la clave del HMAC es aleatoria y solo vive en memoria, así que un volcado de la caché
+ * no permite probar contraseñas sin ella. La caché tiene tamaño máximo y las entradas caducan tras el TTL configurado, y sus
+ * aciertos y fallos se publican como métricas de la caché "autenticacion".
+ */
+public class CachingReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final ReactiveAuthenticationManager delegado;
+    private final Cache<String, Authentication> cache;
+    private final SecretKey claveHuella;
+
+    public CachingReactiveAuthenticationManager(ReactiveAuthenticationManager delegado, Duration ttl, long maximoEntradas,
+                                                MeterRegistry meterRegistry) {
+        this.delegado = delegado;
+        byte[] aleatoria = new byte[32];
+        new SecureRandom().nextBytes(aleatoria);
+        this.claveHuella = new SecretKeySpec(aleatoria, "HmacSHA256");
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximoEntradas)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "autenticacion");
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken)
+                || !(authentication.getCredentials() instanceof String password)) {
+            return delegado.authenticate(authentication);
+        }
+        String clave = huella(authentication.getName(), password);
+        Authentication verificada = cache.getIfPresent(clave);
+        if (verificada != null) {
+            return Mono.just(verificada);
+        }
+        return delegado.authenticate(authentication)
+                .doOnNext(resultado -> cache.put(clave, resultado));
+    }
+
+    /**
+     * Elimina de la caché todas las credenciales verificadas de un usuario (por ejemplo, al hacer logout).
+     *
+     * @param username Nombre del usuario.
+     */
+    public void invalidar(String username) {
+        cache.asMap().values().removeIf(a -> a.getName().equals(username));
+    }
+
+    /**
+     * Aciertos, fallos y desalojos de la caché desde el arranque.
+     */
+    public CacheStats estadisticas() {
+        return cache.stats();
+    }
+
+    private String huella(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(claveHuella);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0); // Separador para que "ab"+"c" y "a"+"bc" no coincidan
+            mac.update(password.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no está disponible", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.henrry.Api_crud.Config;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cubo de tokens: se llena a un ritmo constante hasta su capacidad (la ráfaga permitida) y cada
+ * solicitud consume un token. El estado es inmutable y se reemplaza con compareAndSet, así que
+ * varios hilos pueden consumir del mismo cubo sin bloquearse.
+ */
+final class CuboTokens {
+
+    private final double tokensPorNano;
+    private final double capacidad;
+    private final AtomicReference<Estado> estado;
+
+    CuboTokens(double porSegundo, int capacidad, long ahora) {
+        this.tokensPorNano = porSegundo / 1_000_000_000d;
+        this.capacidad = capacidad;
+        this.estado = new AtomicReference<>(new Estado(capacidad, ahora));
+    }
+
+    /**
+     * Consume un token si lo hay.
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime()).
+     * @return 0 si se consumió, o los nanosegundos que faltan para que haya un token.
+     */
+    long consumir(long ahora) {
+        while (true) {
+            Estado actual = estado.get();
+            // Dos hilos pueden leer el reloj en un orden y llegar aquí en el otro: el tiempo nunca retrocede
+            long instante = Math.max(ahora, actual.instante());
+            double tokens = Math.min(capacidad, actual.tokens() + (instante - actual.instante()) * tokensPorNano);
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / tokensPorNano);
+            }
+            if (estado.compareAndSet(actual, new Estado(tokens - 1, instante))) {
+                return 0;
+            }
+        }
+    }
+
+    private record Estado(double tokens, long instante) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.henrry.Api_crud.Config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Límite adaptativo de solicitudes en curso (AIMD). Cada respuesta rápida y correcta sube el límite
+ * en 1/límite, es decir, uno por cada ventana completa de solicitudes; una respuesta lenta o un
+ * error del servidor lo multiplica por 0.9. Así el límite sigue la concurrencia que el servicio
+ * atiende sin degradarse, y lo que pasa de ahí se rechaza en lugar de hacer cola.
+ * <p>
+ * Solo sube si el límite se está usando (al menos la mitad ocupada): con poco tráfico todas las
+ * respuestas son rápidas y, si no, crecería sin medida.
+ */
+final class LimiteConcurrencia {
+
+    private static final double REDUCCION = 0.9;
+
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaMaxima;
+    private final AtomicInteger enCurso = new AtomicInteger();
+    // El límite es un double que se actualiza sin bloqueos: se guardan sus bits en un AtomicLong
+    private final AtomicLong limite;
+
+    /**
+     * @param latenciaMaxima Nanosegundos a partir de los cuales una respuesta cuenta como lenta.
+     */
+    LimiteConcurrencia(int inicial, int minimo, int maximo, long latenciaMaxima) {
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.latenciaMaxima = latenciaMaxima;
+        this.limite = new AtomicLong(Double.doubleToLongBits(Math.max(minimo, Math.min(maximo, inicial))));
+    }
+
+    /**
+     * Ocupa un lugar si hay alguno libre; quien lo obtiene debe llamar a {@link #liberar} una vez.
+     */
+    boolean adquirir() {
+        while (true) {
+            int actual = enCurso.get();
+            if (actual >= (int) limite()) {
+                return false;
+            }
+            if (enCurso.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libera el lugar y ajusta el límite según cómo terminó la solicitud.
+     *
+     * @param latencia  Nanosegundos hasta que se empezó a enviar la respuesta.
+     * @param sobrecarga Si terminó con un error del servidor.
+     */
+    void liberar(long latencia, boolean sobrecarga) {
+        int ocupados = enCurso.getAndDecrement();
+        if (sobrecarga || latencia > latenciaMaxima) {
+            ajustar(limite -> Math.max(minimo, limite * REDUCCION));
+        } else if (ocupados * 2 >= limite()) {
+            ajustar(limite -> Math.min(maximo, limite + 1 / limite));
+        }
+    }
+
+    double limite() {
+        return Double.longBitsToDouble(limite.get());
+    }
+
+    int enCurso() {
+        return enCurso.get();
+    }
+
+    private void ajustar(DoubleUnaryOperator cambio) {
+        limite.updateAndGet(bits -> Double.doubleToLongBits(cambio.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+}
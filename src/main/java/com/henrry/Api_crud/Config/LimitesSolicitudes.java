@@ -0,0 +1,174 @@
+package com.henrry.Api_crud.Config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Protege el servicio de los clientes que envían demasiadas solicitudes y de la saturación.
+ * Son dos filtros de la cadena de seguridad:
+ * <ul>
+ *     <li>{@link #antesDeAutenticar()}: un cubo de tokens por IP y el límite adaptativo de solicitudes
+ *     en curso. Va antes de autenticar para que una avalancha de credenciales no llegue a BCrypt.</li>
+ *     <li>{@link #despuesDeAutenticar()}: un cubo de tokens por usuario autenticado, que sigue al
+ *     usuario aunque cambie de IP.</li>
+ * </ul>
+ * Un cubo vacío se responde con 429 y un servicio saturado con 503, los dos con 'Retry-After' y
+ * sin esperar: rechazar enseguida cuesta menos que dejar crecer la cola y la latencia de todos.
+ * Los endpoints de Actuator no pasan por ningún límite: Prometheus y los chequeos de salud deben
+ * poder leer el estado justo cuando el servicio está saturado, y no ocupan lugar en el límite adaptativo.
+ * <p>
+ * Los cubos se guardan en una caché acotada y se olvidan tras el tiempo que tardan en llenarse:
+ * para entonces estarían llenos, así que olvidarlos no cambia nada.
+ */
+public class LimitesSolicitudes {
+
+    private final Cuota porUsuario;
+    private final Cuota porIp;
+    private final Cache<String, CuboTokens> cubosUsuario;
+    private final Cache<String, CuboTokens> cubosIp;
+    private final LimiteConcurrencia concurrencia;
+    private final Counter rechazosUsuario;
+    private final Counter rechazosIp;
+    private final Counter rechazosSaturacion;
+
+    public LimitesSolicitudes(Cuota porUsuario, Cuota porIp, Concurrencia concurrencia, MeterRegistry registry) {
+        this.porUsuario = porUsuario;
+        this.porIp = porIp;
+        this.cubosUsuario = cubos(porUsuario);
+        this.cubosIp = cubos(porIp);
+        this.concurrencia = new LimiteConcurrencia(concurrencia.inicial(), concurrencia.minimo(), concurrencia.maximo(),
+                concurrencia.latenciaMaxima().toNanos());
+        this.rechazosUsuario = rechazos(registry, "usuario");
+        this.rechazosIp = rechazos(registry, "ip");
+        this.rechazosSaturacion = rechazos(registry, "saturacion");
+        Gauge.builder("api.solicitudes.limite", this.concurrencia, LimiteConcurrencia::limite)
+                .description("Límite adaptativo de solicitudes en curso")
+                .register(registry);
+        Gauge.builder("api.solicitudes.en-curso", this.concurrencia, LimiteConcurrencia::enCurso)
+                .description("Solicitudes en curso")
+                .register(registry);
+    }
+
+    /**
+     * Filtro por IP y de solicitudes en curso. El lugar se libera cuando termina la respuesta, pero
+     * la latencia se mide hasta que se empieza a enviar, para que un flujo largo (NDJSON, SSE) no
+     * cuente como una respuesta lenta.
+     */
+    public WebFilter antesDeAutenticar() {
+        return (exchange, chain) -> {
+            if (exento(exchange)) {
+                return chain.filter(exchange);
+            }
+            long espera = consumir(cubosIp, porIp, ip(exchange));
+            if (espera > 0) {
+                rechazosIp.increment();
+                return rechazar(exchange, HttpStatus.TOO_MANY_REQUESTS, espera);
+            }
+            if (!concurrencia.adquirir()) {
+                rechazosSaturacion.increment();
+                return rechazar(exchange, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            }
+            long inicio = System.nanoTime();
+            AtomicLong latencia = new AtomicLong(-1);
+            exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> latencia.compareAndSet(-1, System.nanoTime() - inicio)));
+            boolean[] sobrecarga = {false};
+            return chain.filter(exchange)
+                    // Los errores todavía no tienen estado: se responden después, fuera de los filtros
+                    .doOnError(error -> sobrecarga[0] = !(error instanceof ResponseStatusException respuesta)
+                            || respuesta.getStatusCode().is5xxServerError())
+                    .doFinally(senal -> {
+                        HttpStatusCode estado = exchange.getResponse().getStatusCode();
+                        latencia.compareAndSet(-1, System.nanoTime() - inicio);
+                        concurrencia.liberar(latencia.get(), sobrecarga[0] || estado != null && estado.is5xxServerError());
+                    });
+        };
+    }
+
+    /**
+     * Filtro por usuario autenticado; las solicitudes anónimas ya pasaron por el límite de su IP.
+     */
+    public WebFilter despuesDeAutenticar() {
+        return (exchange, chain) -> exento(exchange) ? chain.filter(exchange) : ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(Authentication::isAuthenticated)
+                .map(autenticacion -> consumir(cubosUsuario, porUsuario, autenticacion.getName()))
+                .defaultIfEmpty(0L)
+                .flatMap(espera -> {
+                    if (espera > 0) {
+                        rechazosUsuario.increment();
+                        return rechazar(exchange, HttpStatus.TOO_MANY_REQUESTS, espera);
+                    }
+                    return chain.filter(exchange);
+                });
+    }
+
+    private static boolean exento(ServerWebExchange exchange) {
+        return exchange.getRequest().getPath().pathWithinApplication().value().startsWith("/actuator/");
+    }
+
+    private static long consumir(Cache<String, CuboTokens> cubos, Cuota cuota, String clave) {
+        long ahora = System.nanoTime();
+        return cubos.get(clave, c -> new CuboTokens(cuota.porSegundo(), cuota.rafaga(), ahora)).consumir(ahora);
+    }
+
+    private static Mono<Void> rechazar(ServerWebExchange exchange, HttpStatus estado, long espera) {
+        exchange.getResponse().setStatusCode(estado);
+        // Retry-After va en segundos enteros: se redondea hacia arriba para no invitar a reintentar antes de tiempo
+        long segundos = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(espera + TimeUnit.SECONDS.toNanos(1) - 1));
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(segundos));
+        return exchange.getResponse().setComplete();
+    }
+
+    private static String ip(ServerWebExchange exchange) {
+        InetSocketAddress remota = exchange.getRequest().getRemoteAddress();
+        return remota != null && remota.getAddress() != null ? remota.getAddress().getHostAddress() : "desconocida";
+    }
+
+    private static Cache<String, CuboTokens> cubos(Cuota cuota) {
+        return Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos((long) Math.ceil(cuota.rafaga() / cuota.porSegundo() * 1_000_000_000d)))
+                .maximumSize(cuota.maximoClientes())
+                .build();
+    }
+
+    private static Counter rechazos(MeterRegistry registry, String motivo) {
+        return Counter.builder("api.solicitudes.rechazadas")
+                .description("Solicitudes rechazadas por límite de ritmo o por saturación")
+                .tag("motivo", motivo)
+                .register(registry);
+    }
+
+    /**
+     * Ritmo sostenido y ráfaga permitidos a cada cliente.
+     *
+     * @param maximoClientes Cuántos cubos se guardan como máximo.
+     */
+    public record Cuota(double porSegundo, int rafaga, long maximoClientes) {
+    }
+
+    /**
+     * Ajustes del límite adaptativo de solicitudes en curso.
+     *
+     * @param latenciaMaxima Latencia a partir de la cual una respuesta cuenta como lenta y el límite baja.
+     */
+    public record Concurrencia(int inicial, int minimo, int maximo, Duration latenciaMaxima) {
+    }
+}
@@ -1,23 +1,19 @@
 package com.henrry.Api_crud.Config;
 
-import org.aopalliance.intercept.Interceptor;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ResourceBundleMessageSource;
-import org.springframework.web.servlet.LocaleResolver;
-import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import org.springframework.web.servlet.i18n.AcceptHeaderLocaleResolver;
-import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
-import org.springframework.web.servlet.i18n.SessionLocaleResolver;
 
-import java.util.Arrays;
 import java.util.Locale;
 
 @Configuration
-public class LocaleConfig implements WebMvcConfigurer {
+public class LocaleConfig {
 
+    /**
+     * Idiomas para los que existen archivos de mensajes.
+     */
+    static final String[] IDIOMAS_SOPORTADOS = {"es", "en", "fr"};
 
     /**
      * Define un bean de MessageSource que carga mensajes desde archivos de propiedades.
@@ -33,26 +29,23 @@ public class LocaleConfig implements WebMvcConfigurer {
         // Establece la codificación por defecto para los mensajes.
         // UTF-8 es recomendado para soportar caracteres especiales en diferentes idiomas.
         messageSource.setDefaultEncoding("UTF-8");
+        // Precarga los archivos de cada idioma soportado para que la primera solicitud
+        // no lea del disco dentro del event loop de Netty.
+        for (String idioma : IDIOMAS_SOPORTADOS) {
+            messageSource.getMessage("saludo", null, Locale.forLanguageTag(idioma));
+        }
         return messageSource;
     }
 
+    /**
+     * Resuelve el locale de cada solicitud sin guardar nada en sesión.
+     * El parámetro "lang" tiene prioridad; si no viene, se usa el encabezado 'Accept-Language'
+     * con sus pesos q. Los controladores reciben el resultado como parámetro {@link Locale}.
+     *
+     * @return El LocaleContextResolver que usa WebFlux para cada intercambio.
+     */
     @Bean
-    public LocaleResolver localeResolver() {
-        SessionLocaleResolver resolver = new SessionLocaleResolver();
-        resolver.setDefaultLocale(Locale.ENGLISH); // Establece el locale por defecto
-        return resolver;
-    }
-
-    @Bean
-    public LocaleChangeInterceptor localeChangeInterceptor() {
-        LocaleChangeInterceptor interceptor = new LocaleChangeInterceptor();
-        interceptor.setParamName("lang");
-        return interceptor;
-    }
-
-    @Override
-    public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(localeChangeInterceptor());
+    public AcceptLanguageLocaleResolver localeContextResolver() {
+        return new AcceptLanguageLocaleResolver(IDIOMAS_SOPORTADOS, Locale.ENGLISH, 256);
     }
 }
-
@@ -0,0 +1,53 @@
+package com.henrry.Api_crud.Config;
+
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationContext;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationConvention;
+
+@Configuration
+public class MetricasConfig {
+
+    /**
+     * Agrega la etiqueta "locale" a la métrica http.server.requests, además de las etiquetas
+     * habituales (método, uri, estado). Solo puede tomar los idiomas soportados, así que no
+     * aumenta la cardinalidad más allá de tres series por endpoint.
+     *
+     * @param localeResolver El mismo resolver que usan los controladores.
+     * @return La convención de observación que usa WebFlux para cada solicitud.
+     */
+    @Bean
+    public ServerRequestObservationConvention serverRequestObservationConvention(AcceptLanguageLocaleResolver localeResolver) {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                return super.getLowCardinalityKeyValues(context)
+                        .and("locale", localeResolver.resolverSolicitud(context.getCarrier()).getLanguage());
+            }
+        };
+    }
+
+    /**
+     * Publica el número de productos y de pedidos guardados. Cada uno se guarda una sola vez para
+     * todos los idiomas, así que no llevan la etiqueta del idioma.
+     *
+     * @return Un MeterBinder que registra un gauge para productos y otro para pedidos.
+     */
+    @Bean
+    public MeterBinder metricasAlmacenamiento(ProductoService productoService, PedidoService pedidoService) {
+        return registry -> {
+            Gauge.builder("api.productos.almacenados", productoService, ProductoService::contarProductos)
+                    .description("Productos guardados en memoria")
+                    .register(registry);
+            Gauge.builder("api.pedidos.almacenados", pedidoService, PedidoService::contarPedidos)
+                    .description("Pedidos guardados en memoria")
+                    .register(registry);
+        };
+    }
+}
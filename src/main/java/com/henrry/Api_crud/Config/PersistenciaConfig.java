@@ -0,0 +1,63 @@
+package com.henrry.Api_crud.Config;
+
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Persistence.RegistroEscrituraAnticipada;
+import com.henrry.Api_crud.Persistence.RegistroR2dbc;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Elige dónde se guardan los cambios de productos y pedidos según persistencia.tipo:
+ * wal (por defecto), r2dbc o memoria. El registro se abre (y se recupera) antes de crear
+ * los servicios, y al cerrar el contexto se esperan las escrituras pendientes.
+ */
+@Configuration
+public class PersistenciaConfig {
+
+    /**
+     * Registro de escritura anticipada en archivos locales.
+     *
+     * @return El registro que usan ProductoService y PedidoService.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "persistencia.tipo", havingValue = "wal", matchIfMissing = true)
+    public RegistroCambios registroCambios(@Value("${persistencia.wal.directorio:datos/wal}") Path directorio,
+                                           @Value("${persistencia.wal.tamano-segmento:64MB}") DataSize tamanoSegmento,
+                                           @Value("${persistencia.wal.segmentos-por-instantanea:4}") int segmentosPorInstantanea,
+                                           @Value("${persistencia.wal.intervalo-instantanea:10m}") Duration intervaloInstantanea) throws IOException {
+        return new RegistroEscrituraAnticipada(directorio, Math.toIntExact(tamanoSegmento.toBytes()),
+                segmentosPorInstantanea, intervaloInstantanea);
+    }
+
+    /**
+     * Registro en la base de datos configurada con spring.r2dbc.*, a través del pool de conexiones.
+     *
+     * @return El registro que usan ProductoService y PedidoService.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "persistencia.tipo", havingValue = "r2dbc")
+    public RegistroCambios registroCambiosR2dbc(ConnectionFactory conexiones,
+                                                @Value("${persistencia.r2dbc.maximo-lote:1000}") int maximoLote,
+                                                @Value("${persistencia.r2dbc.espera-recuperacion:60s}") Duration espera) {
+        return new RegistroR2dbc(conexiones, maximoLote, espera);
+    }
+
+    /**
+     * Sin persistencia: los datos solo viven en memoria y se pierden al reiniciar.
+     *
+     * @return Un registro que no guarda nada.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "persistencia.tipo", havingValue = "memoria")
+    public RegistroCambios registroCambiosEnMemoria() {
+        return RegistroCambios.ninguno();
+    }
+}
@@ -1,57 +1,174 @@
 package com.henrry.Api_crud.Config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.Customizer;
-import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
-import org.springframework.security.web.SecurityFilterChain;
-import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.RedirectServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.logout.DelegatingServerLogoutHandler;
+import org.springframework.security.web.server.authentication.logout.RedirectServerLogoutSuccessHandler;
+import org.springframework.security.web.server.authentication.logout.SecurityContextServerLogoutHandler;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+
+import reactor.core.publisher.Mono;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
 
 @Configuration // Indica que esta clase es una clase de configuración de Spring
-@EnableWebSecurity // Habilita la configuración de seguridad web en la aplicación
+@EnableWebFluxSecurity // Habilita la configuración de seguridad reactiva (WebFlux) en la aplicación
 public class SecurityConfig {
 
+	private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
 	@Bean
-	public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+	public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, CachingReactiveAuthenticationManager authenticationManager,
+														 ReactiveJwtDecoder jwtDecoder, MeterRegistry meterRegistry, LimitesSolicitudes limites) {
+		JwtReactiveAuthenticationManager jwtAuthenticationManager = new JwtReactiveAuthenticationManager(jwtDecoder);
+		jwtAuthenticationManager.setJwtAuthenticationConverter(jwtAuthenticationConverter());
+
+		RedirectServerLogoutSuccessHandler logoutSuccessHandler = new RedirectServerLogoutSuccessHandler();
+		logoutSuccessHandler.setLogoutSuccessUrl(URI.create("/public/api/saludo")); // Redirige a "/public/api/saludo" después del logout
+
 		http
-				.csrf(AbstractHttpConfigurer::disable) // Deshabilita la protección CSRF (solo para desarrollo y pruebas)
-				.authorizeHttpRequests(auth -> auth
-						.requestMatchers("/public/api/**").permitAll() // Permite acceso público a "/api/saludo"
-						.requestMatchers("/api/productos").hasRole("ADMIN") // Restringe "/api/productos" solo a usuarios con rol "ADMIN"
-						.anyRequest().authenticated() // Requiere autenticación para cualquier otra solicitud
+				.csrf(ServerHttpSecurity.CsrfSpec::disable) // Deshabilita la protección CSRF (solo para desarrollo y pruebas)
+				.addFilterBefore(limites.antesDeAutenticar(), SecurityWebFiltersOrder.HTTP_BASIC) // Límite por IP y de solicitudes en curso, antes de llegar a BCrypt
+				.addFilterBefore(limites.despuesDeAutenticar(), SecurityWebFiltersOrder.AUTHORIZATION) // Límite por usuario, ya autenticado
+				.authorizeExchange(auth -> auth
+						.pathMatchers("/public/api/**").permitAll() // Permite acceso público a "/api/saludo"
+						.pathMatchers("/actuator/health", "/actuator/prometheus").permitAll() // Prometheus y los chequeos de salud no envían credenciales
+						.pathMatchers("/api/productos").hasRole("ADMIN") // Restringe "/api/productos" solo a usuarios con rol "ADMIN"
+						.anyExchange().authenticated() // Requiere autenticación para cualquier otra solicitud
 				)
-				.httpBasic(Customizer.withDefaults()) // Habilita la autenticación básica HTTP
+				.httpBasic(basic -> basic.authenticationManager(contarAutenticaciones(authenticationManager, meterRegistry, "basic"))) // Habilita la autenticación básica HTTP con caché de credenciales
+				.oauth2ResourceServer(resourceServer -> resourceServer.jwt(jwt -> jwt.authenticationManager(contarAutenticaciones(jwtAuthenticationManager, meterRegistry, "jwt")))) // Acepta tokens "Bearer" firmados emitidos por /api/auth/token
+				.securityContextRepository(NoOpServerSecurityContextRepository.getInstance()) // Sin estado: no se guarda el contexto de seguridad en sesión
 				.exceptionHandling(ex -> ex // Configura el manejo de excepciones
-						.authenticationEntryPoint(new LoginUrlAuthenticationEntryPoint("/api/productos")) // Redirige a "/dashboard" al autenticarse
-				)
-				.logout(logout -> logout // Configura el logout
-						.invalidateHttpSession(true) // Invalida la sesión HTTP al hacer logout
-						.clearAuthentication(true) // Limpia la autenticación al hacer logout
-						.logoutRequestMatcher(new AntPathRequestMatcher("/logout")) // Establece la URL para el logout
-						.logoutSuccessUrl("/public/api/saludo").permitAll() // Redirige a "/public/api/saludo" después del logout
+						.authenticationEntryPoint(new RedirectServerAuthenticationEntryPoint("/api/productos")) // Redirige a "/api/productos" si no está autenticado
 				)
-				.sessionManagement(session -> session // Configura el manejo de sesiones
-						.invalidSessionUrl("/logout") // Establece la URL para sesiones inválidas
-						.sessionFixation().newSession() // Fija la sesión creando una nueva
+				.logout(logout -> logout // Configura el logout; limpia el contexto de seguridad de la sesión
+						.requiresLogout(ServerWebExchangeMatchers.pathMatchers("/logout")) // Establece la URL para el logout
+						.logoutHandler(new DelegatingServerLogoutHandler(
+								new SecurityContextServerLogoutHandler(),
+								(exchange, authentication) -> Mono.fromRunnable(() -> authenticationManager.invalidar(authentication.getName())))) // Olvida las credenciales cacheadas del usuario
+						.logoutSuccessHandler(logoutSuccessHandler)
 				);
-		return http.build(); // Construye y devuelve la cadena de filtros de seguridad}
+		return http.build(); // Construye y devuelve la cadena de filtros de seguridad
+	}
+
+	// Cuenta las autenticaciones exitosas y fallidas de cada mecanismo en la métrica "api.autenticaciones"
+	private static ReactiveAuthenticationManager contarAutenticaciones(ReactiveAuthenticationManager delegado, MeterRegistry registry, String mecanismo) {
+		Counter exitos = Counter.builder("api.autenticaciones").tag("mecanismo", mecanismo).tag("resultado", "exito").register(registry);
+		Counter fallos = Counter.builder("api.autenticaciones").tag("mecanismo", mecanismo).tag("resultado", "fallo").register(registry);
+		return authentication -> delegado.authenticate(authentication)
+				.doOnNext(resultado -> exitos.increment())
+				.doOnError(AuthenticationException.class, e -> fallos.increment());
+	}
+	@Bean // Autenticación HTTP Basic con caché delante de BCrypt
+	public CachingReactiveAuthenticationManager authenticationManager(
+			ReactiveUserDetailsService userDetailsService,
+			@Value("${seguridad.cache-autenticacion.ttl:5m}") Duration ttl,
+			@Value("${seguridad.cache-autenticacion.maximo:10000}") long maximo,
+			MeterRegistry meterRegistry) {
+		UserDetailsRepositoryReactiveAuthenticationManager bcrypt = new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+		bcrypt.setPasswordEncoder(passwordEncoder());
+		return new CachingReactiveAuthenticationManager(bcrypt, ttl, maximo, meterRegistry);
+	}
+
+	@Bean // Límites por usuario y por IP (429) y límite adaptativo de solicitudes en curso (503)
+	public LimitesSolicitudes limitesSolicitudes(
+			@Value("${limites.usuario.por-segundo:50}") double porSegundoUsuario,
+			@Value("${limites.usuario.rafaga:100}") int rafagaUsuario,
+			@Value("${limites.ip.por-segundo:100}") double porSegundoIp,
+			@Value("${limites.ip.rafaga:200}") int rafagaIp,
+			@Value("${limites.maximo-clientes:100000}") long maximoClientes,
+			@Value("${limites.concurrencia.inicial:200}") int concurrenciaInicial,
+			@Value("${limites.concurrencia.minimo:20}") int concurrenciaMinima,
+			@Value("${limites.concurrencia.maximo:2000}") int concurrenciaMaxima,
+			@Value("${limites.concurrencia.latencia-maxima:500ms}") Duration latenciaMaxima,
+			MeterRegistry meterRegistry) {
+		return new LimitesSolicitudes(
+				new LimitesSolicitudes.Cuota(porSegundoUsuario, rafagaUsuario, maximoClientes),
+				new LimitesSolicitudes.Cuota(porSegundoIp, rafagaIp, maximoClientes),
+				new LimitesSolicitudes.Concurrencia(concurrenciaInicial, concurrenciaMinima, concurrenciaMaxima, latenciaMaxima),
+				meterRegistry);
 	}
+
+	@Bean // Firma los tokens de acceso con HMAC-SHA256
+	public JwtEncoder jwtEncoder(SecretKey claveJwt) {
+		return new NimbusJwtEncoder(new ImmutableSecret<>(claveJwt));
+	}
+
+	@Bean // Verifica localmente la firma y la expiración de los tokens de acceso
+	public ReactiveJwtDecoder jwtDecoder(SecretKey claveJwt) {
+		return NimbusReactiveJwtDecoder.withSecretKey(claveJwt)
+				.macAlgorithm(MacAlgorithm.HS256)
+				.build();
+	}
+
+	@Bean // Clave HMAC de los tokens: la configurada o, si no hay, una aleatoria que solo vive en este proceso
+	public SecretKey claveJwt(@Value("${seguridad.jwt.secreto:}") String secreto) {
+		if (secreto.isBlank()) {
+			log.warn("No se configuró seguridad.jwt.secreto: se usa una clave aleatoria y los tokens dejan de valer al reiniciar");
+			byte[] aleatoria = new byte[32];
+			new SecureRandom().nextBytes(aleatoria);
+			return new SecretKeySpec(aleatoria, "HmacSHA256");
+		}
+		byte[] clave = secreto.getBytes(StandardCharsets.UTF_8);
+		if (clave.length < 32) {
+			throw new IllegalStateException("seguridad.jwt.secreto debe tener al menos 32 bytes");
+		}
+		return new SecretKeySpec(clave, "HmacSHA256");
+	}
+
+	@Bean // Convierte el claim "roles" del token en los roles de Spring Security
+	public ReactiveJwtAuthenticationConverterAdapter jwtAuthenticationConverter() {
+		JwtGrantedAuthoritiesConverter roles = new JwtGrantedAuthoritiesConverter();
+		roles.setAuthoritiesClaimName("roles");
+		roles.setAuthorityPrefix(""); // Los roles ya vienen con el prefijo "ROLE_"
+		JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+		converter.setJwtGrantedAuthoritiesConverter(roles);
+		return new ReactiveJwtAuthenticationConverterAdapter(converter);
+	}
+
 	@Bean // Define un bean de Spring para el codificador de contraseñas
 	public PasswordEncoder passwordEncoder() {
 		return new BCryptPasswordEncoder(); // Usa BCrypt para codificar contraseñas
 	}
 
-	@Bean // Define un bean de Spring para el servicio de detalles de usuario
-	public UserDetailsService userDetailsService() {
+	@Bean // Define un bean de Spring para el servicio reactivo de detalles de usuario
+	public ReactiveUserDetailsService userDetailsService() {
 		// Crea un usuario administrador con nombre de usuario "admin" y contraseña "admin123"
 		UserDetails admin = User.builder()
 				.username("admin")
@@ -59,7 +176,7 @@ public class SecurityConfig {
 				.roles("ADMIN") // Asigna el rol "ADMIN"
 				.build();
 
-		// Devuelve un administrador de detalles de usuario en memoria con el usuario creado
-		return new InMemoryUserDetailsManager(admin);
+		// Devuelve un servicio de detalles de usuario en memoria con el usuario creado
+		return new MapReactiveUserDetailsService(admin);
 	}
 }
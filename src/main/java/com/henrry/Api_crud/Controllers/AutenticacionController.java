@@ -0,0 +1,67 @@
+package com.henrry.Api_crud.Controllers;
+
+import com.henrry.Api_crud.Models.TokenAcceso;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Clase de controlador que emite tokens de acceso firmados.
+ */
+@RestController
+@RequestMapping("/api/auth")
+public class AutenticacionController {
+
+    @Autowired
+    private JwtEncoder jwtEncoder;
+
+    /**
+     * Tiempo de validez de los tokens emitidos.
+     */
+    @Value("${seguridad.jwt.ttl:15m}")
+    private Duration ttl;
+
+    /**
+     * Método para obtener un token de acceso.
+     * El usuario se autentica con HTTP Basic y recibe un JWT firmado con HMAC que cualquier nodo
+     * puede verificar localmente, sin sesión en el servidor. Solo se emite con usuario y contraseña:
+     * un token vigente no sirve para pedir otro, o quien lo robe podría renovarlo sin fin.
+     *
+     * @param authentication Usuario autenticado en esta solicitud.
+     * @return El token de acceso y su validez en segundos, o 403 si la solicitud no usó HTTP Basic.
+     */
+    @PostMapping("/token")
+    public Mono<ResponseEntity<TokenAcceso>> emitirToken(Authentication authentication) {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        Instant ahora = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject(authentication.getName())
+                .issuedAt(ahora)
+                .expiresAt(ahora.plus(ttl))
+                .claim("roles", authentication.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .toList())
+                .build();
+        JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+        String token = jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+        return Mono.just(ResponseEntity.ok(new TokenAcceso(token, "Bearer", ttl.toSeconds())));
+    }
+}
@@ -0,0 +1,112 @@
+package com.henrry.Api_crud.Controllers;
+
+import com.henrry.Api_crud.Service.ConflictoVersionException;
+import com.henrry.Api_crud.Service.RevisionCatalogo;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Utilidades para respuestas cacheables por HTTP a partir de la revisión de un catálogo.
+ * El ETag es fuerte e incluye el idioma, porque la misma URL devuelve otro contenido según
+ * 'Accept-Language', y la época de la revisión, porque su número se reinicia en cada arranque. Los clientes deben revalidar siempre ('no-cache'), pero si nada cambió
+ * reciben 304 sin cuerpo y no se consulta el catálogo ni se serializa nada.
+ * La revisión se lee antes que los datos: si el catálogo cambia mientras tanto, el cliente
+ * a lo sumo vuelve a descargar la respuesta en la siguiente consulta.
+ * <p>
+ * Una entidad individual lleva como ETag su propia versión, que el cliente devuelve en
+ * 'If-Match' para actualizarla solo si nadie la cambió desde que la leyó.
+ */
+final class CacheHttp {
+
+    private CacheHttp() {
+    }
+
+    /**
+     * Responde 304 si el cliente ya tiene la revisión vigente ('If-None-Match' o 'If-Modified-Since');
+     * si no, arma la respuesta y le agrega los encabezados de caché.
+     */
+    static <T> Mono<ResponseEntity<T>> siModificado(ServerWebExchange exchange, Locale locale, RevisionCatalogo revision,
+                                                   Supplier<Mono<ResponseEntity<T>>> respuesta) {
+        return siModificado(exchange, etag(locale, revision), revision.modificado(), respuesta);
+    }
+
+    /**
+     * Igual que la anterior pero con un ETag propio; la fecha sigue siendo la del último cambio del catálogo,
+     * que nunca es anterior al último cambio de la entidad.
+     */
+    static <T> Mono<ResponseEntity<T>> siModificado(ServerWebExchange exchange, String etag, Instant modificado,
+                                                   Supplier<Mono<ResponseEntity<T>>> respuesta) {
+        if (exchange.checkNotModified(etag, modificado)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(encabezados(etag, modificado)).build());
+        }
+        return respuesta.get().map(entidad -> ResponseEntity.status(entidad.getStatusCode())
+                .headers(entidad.getHeaders())
+                .headers(encabezados(etag, modificado))
+                .body(entidad.getBody()));
+    }
+
+    /**
+     * ETag de un listado: el idioma, la época y el número de la revisión, por ejemplo {@code "es-k3f9x2-3"}.
+     */
+    static String etag(Locale locale, RevisionCatalogo revision) {
+        return "\"" + locale.getLanguage() + "-" + revision.epoca() + "-" + revision.numero() + "\"";
+    }
+
+    /**
+     * ETag de una entidad: el idioma y su versión, por ejemplo {@code "es-v3"}.
+     */
+    static String etag(Locale locale, long version) {
+        return "\"" + locale.getLanguage() + "-v" + version + "\"";
+    }
+
+    /**
+     * Versión que exige el encabezado 'If-Match', o null si no hay condición (no viene o es '*').
+     * Un ETag débil, de otro idioma o que no es de una entidad nunca coincide (comparación fuerte),
+     * así que se devuelve -1 y la actualización responde 412.
+     */
+    static Long versionEsperada(ServerWebExchange exchange, Locale locale) {
+        List<String> etags = exchange.getRequest().getHeaders().getIfMatch();
+        if (etags.isEmpty() || etags.contains("*")) {
+            return null;
+        }
+        String prefijo = "\"" + locale.getLanguage() + "-v";
+        for (String etag : etags) {
+            if (etag.startsWith(prefijo) && etag.endsWith("\"") && etag.length() > prefijo.length() + 1) {
+                try {
+                    return Long.parseLong(etag.substring(prefijo.length(), etag.length() - 1));
+                } catch (NumberFormatException e) {
+                    // No es un ETag nuestro: se sigue con el siguiente
+                }
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Respuesta 412 para una actualización cuya versión esperada no es la guardada; lleva el ETag vigente
+     * para que el cliente pueda volver a leer la entidad y reintentar.
+     */
+    static <T> ResponseEntity<T> conflicto(Locale locale, ConflictoVersionException conflicto) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .eTag(etag(locale, conflicto.getVersionActual()))
+                .build();
+    }
+
+    private static HttpHeaders encabezados(String etag, Instant modificado) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setLastModified(modificado);
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_LANGUAGE));
+        return headers;
+    }
+}
@@ -0,0 +1,99 @@
+package com.henrry.Api_crud.Controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Caché de cuerpos de respuesta ya codificados en UTF-8, por endpoint, idioma y versión de los datos.
+ * Un acierto se escribe tal cual en la respuesta, sin pasar por Jackson ni por MessageFormat.
+ * Como la versión forma parte de la clave, cualquier escritura en los datos hace que las entradas
+ * anteriores dejen de usarse; se descartan por tamaño o por falta de uso.
+ * El tamaño total está acotado en bytes.
+ */
+@Component
+public class CacheRespuestas {
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Clave, Respuesta> cache;
+
+    public CacheRespuestas(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${respuestas.cache.maximo-bytes:16777216}") long maximoBytes,
+                           @Value("${respuestas.cache.sin-uso:10m}") Duration sinUso) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximoBytes)
+                .weigher((Clave clave, Respuesta respuesta) -> respuesta.cuerpo().length)
+                .expireAfterAccess(sinUso)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "respuestas");
+    }
+
+    /**
+     * Devuelve la respuesta guardada o, si no existe, la genera, la serializa y la guarda.
+     * Solo se guardan respuestas 2xx; el resto se serializa sin guardarse.
+     *
+     * @param endpoint Identifica el recurso, incluidos los parámetros que cambian el contenido.
+     * @param locale   Idioma de la respuesta.
+     * @param version  Versión de los datos; debe cambiar con cada escritura.
+     * @param tipo     Tipo de contenido del cuerpo.
+     * @param generar  Produce la respuesta cuando no está en caché.
+     * @return La respuesta con el cuerpo ya codificado.
+     */
+    public Mono<ResponseEntity<byte[]>> obtener(String endpoint, Locale locale, long version, MediaType tipo,
+                                                Supplier<Mono<? extends ResponseEntity<?>>> generar) {
+        Clave clave = new Clave(endpoint, locale.getLanguage(), version);
+        Respuesta guardada = cache.getIfPresent(clave);
+        if (guardada != null) {
+            return Mono.just(guardada.entidad(tipo));
+        }
+        return generar.get().map(entidad -> {
+            Respuesta respuesta = new Respuesta(entidad.getStatusCode(), HttpHeaders.readOnlyHttpHeaders(entidad.getHeaders()),
+                    serializar(entidad.getBody()));
+            if (entidad.getStatusCode().is2xxSuccessful()) {
+                cache.put(clave, respuesta);
+            }
+            return respuesta.entidad(tipo);
+        });
+    }
+
+    private byte[] serializar(Object cuerpo) {
+        if (cuerpo == null) {
+            return new byte[0];
+        }
+        if (cuerpo instanceof String texto) {
+            return texto.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return objectMapper.writeValueAsBytes(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+    }
+
+    private record Clave(String endpoint, String idioma, long version) {
+    }
+
+    private record Respuesta(HttpStatusCode estado, HttpHeaders encabezados, byte[] cuerpo) {
+
+        ResponseEntity<byte[]> entidad(MediaType tipo) {
+            return ResponseEntity.status(estado).headers(encabezados).contentType(tipo).body(cuerpo);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.henrry.Api_crud.Controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Soporte del encabezado 'Idempotency-Key': un cliente que reintenta una creación con la misma llave
+ * recibe la respuesta de la primera vez, sin que la escritura se repita.
+ * <p>
+ * Cada llave guarda el Mono de su respuesta con cache(): los duplicados que llegan mientras la
+ * primera solicitud está en curso se suscriben al mismo Mono y esperan su resultado, y los que
+ * llegan después lo reciben ya guardado. Las llaves son de cada usuario y de cada endpoint, así que
+ * dos usuarios no comparten respuestas aunque usen la misma llave.
+ * <p>
+ * Solo se conservan las respuestas 2xx; si la operación falla o responde otro estado, la llave se
+ * libera para que el reintento se ejecute de nuevo. Las llaves caducan tras el TTL configurado y
+ * la cantidad está acotada.
+ */
+@Component
+public class Idempotencia {
+
+    public static final String ENCABEZADO = "Idempotency-Key";
+
+    /**
+     * Encabezado que marca una respuesta repetida a partir de la guardada.
+     */
+    public static final String REPETIDA = "Idempotent-Replayed";
+
+    private static final int LARGO_MAXIMO = 255;
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Clave, Entrada> cache;
+
+    public Idempotencia(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                        @Value("${idempotencia.ttl:24h}") Duration ttl,
+                        @Value("${idempotencia.maximo:100000}") long maximo) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximo)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotencia");
+    }
+
+    /**
+     * Ejecuta la operación una sola vez por llave. Sin llave la ejecuta siempre.
+     *
+     * @param usuario   Usuario autenticado que hace la solicitud.
+     * @param endpoint  Identifica la operación (por ejemplo, "POST /api/pedidos").
+     * @param llave     Valor de 'Idempotency-Key', o null si no se envió.
+     * @param solicitud Cuerpo de la solicitud; si se repite la llave con otro cuerpo se responde 422.
+     * @param operacion Produce la respuesta; solo se suscribe una vez por llave.
+     * @return La respuesta de la operación, la guardada (con 'Idempotent-Replayed'), 400 si la llave
+     *         no es válida o 422 si la llave ya se usó con otra solicitud.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<ResponseEntity<T>> ejecutar(String usuario, String endpoint, String llave, Object solicitud,
+                                                Supplier<Mono<ResponseEntity<T>>> operacion) {
+        if (llave == null) {
+            return operacion.get();
+        }
+        if (llave.isBlank() || llave.length() > LARGO_MAXIMO) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        Clave clave = new Clave(usuario, endpoint, llave);
+        // La huella se toma antes de ejecutar: el servicio puede modificar el objeto recibido
+        String huella = huella(solicitud);
+        Entrada[] creada = new Entrada[1];
+        Entrada entrada = cache.get(clave, c -> creada[0] = new Entrada(huella, Mono.defer(operacion)
+                .doOnNext(respuesta -> {
+                    if (!respuesta.getStatusCode().is2xxSuccessful()) {
+                        cache.asMap().remove(clave, creada[0]);
+                    }
+                })
+                .doOnError(error -> cache.asMap().remove(clave, creada[0]))
+                .cache()));
+        if (!entrada.huella().equals(huella)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build());
+        }
+        Mono<ResponseEntity<T>> respuesta = (Mono<ResponseEntity<T>>) entrada.respuesta();
+        if (entrada == creada[0]) {
+            return respuesta;
+        }
+        return respuesta.map(original -> ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(REPETIDA, "true")
+                .body(original.getBody()));
+    }
+
+    private String huella(Object solicitud) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(solicitud)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la solicitud", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
+        }
+    }
+
+    private record Clave(String usuario, String endpoint, String llave) {
+    }
+
+    /**
+     * @param huella    SHA-256 del cuerpo de la primera solicitud.
+     * @param respuesta Respuesta de la primera solicitud, compartida por los duplicados.
+     */
+    private record Entrada(String huella, Mono<? extends ResponseEntity<?>> respuesta) {
+    }
+}
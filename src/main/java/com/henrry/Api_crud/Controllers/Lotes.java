@@ -0,0 +1,95 @@
+package com.henrry.Api_crud.Controllers;
+
+import com.henrry.Api_crud.Models.ResultadoLote;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Utilidades para procesar lotes de operaciones recibidos como arreglo JSON o flujo NDJSON.
+ * Los elementos se leen a medida que llegan y se procesan en bloques de {@value #TAMANO_BLOQUE},
+ * de modo que nunca se tiene el lote completo en memoria.
+ */
+final class Lotes {
+
+    static final int TAMANO_BLOQUE = 500;
+
+    private static final Logger log = LoggerFactory.getLogger(Lotes.class);
+
+    private Lotes() {
+    }
+
+    /**
+     * Procesa cada bloque de elementos con una sola llamada al servicio.
+     * La función recibe los elementos del bloque y debe devolver un resultado por elemento, en el mismo orden.
+     */
+    static <T, R> Flux<ResultadoLote> porBloques(Flux<T> elementos, Function<List<T>, Flux<R>> operacion,
+                                                 Function<R, Long> id, HttpStatus estado) {
+        return porBloques(elementos, elemento -> null, operacion, id, estado);
+    }
+
+    /**
+     * Como {@link #porBloques(Flux, Function, Function, HttpStatus)}, pero antes revisa cada elemento:
+     * los rechazados se informan con 400 y el mensaje que devuelve la revisión, y el resto del bloque
+     * se procesa igual. La revisión devuelve null si el elemento es válido.
+     */
+    static <T, R> Flux<ResultadoLote> porBloques(Flux<T> elementos, Function<T, String> revision,
+                                                 Function<List<T>, Flux<R>> operacion,
+                                                 Function<R, Long> id, HttpStatus estado) {
+        return elementos.index()
+                .buffer(TAMANO_BLOQUE)
+                .concatMap(bloque -> {
+                    List<Tuple2<Long, T>> validos = new ArrayList<>(bloque.size());
+                    List<ResultadoLote> rechazados = new ArrayList<>();
+                    for (Tuple2<Long, T> elemento : bloque) {
+                        String error = revision.apply(elemento.getT2());
+                        if (error == null) {
+                            validos.add(elemento);
+                        } else {
+                            rechazados.add(fallo(elemento.getT1(), null, HttpStatus.BAD_REQUEST, error));
+                        }
+                    }
+                    Flux<ResultadoLote> procesados = validos.isEmpty() ? Flux.empty()
+                            : operacion.apply(validos.stream().map(Tuple2::getT2).toList())
+                            .index()
+                            .map(r -> exito(validos.get(r.getT1().intValue()).getT1(), id.apply(r.getT2()), estado));
+                    // Las dos partes ya vienen ordenadas por índice: se intercalan en el orden del lote
+                    return Flux.mergeComparing(Comparator.comparingLong(ResultadoLote::getIndice),
+                            Flux.fromIterable(rechazados), procesados);
+                });
+    }
+
+    /**
+     * Procesa los elementos uno a uno dentro de cada bloque. Un error en un elemento no detiene el lote:
+     * se informa en el resultado de ese elemento. La operación debe convertir los errores esperados
+     * (conflictos, datos inválidos) en su resultado; los demás se registran en el log y se informan
+     * con 500 y un mensaje fijo, sin detalles internos.
+     */
+    static <T> Flux<ResultadoLote> porElemento(Flux<T> elementos, BiFunction<Long, T, Mono<ResultadoLote>> operacion) {
+        return elementos.index()
+                .buffer(TAMANO_BLOQUE)
+                .concatMap(bloque -> Flux.fromIterable(bloque)
+                        .concatMap(elemento -> operacion.apply(elemento.getT1(), elemento.getT2())
+                                .onErrorResume(e -> {
+                                    log.error("Error inesperado en el elemento {} de un lote", elemento.getT1(), e);
+                                    return Mono.just(fallo(elemento.getT1(), null, HttpStatus.INTERNAL_SERVER_ERROR, "Error interno"));
+                                })));
+    }
+
+    static ResultadoLote exito(long indice, Long id, HttpStatus estado) {
+        return new ResultadoLote(indice, id, estado.value(), null);
+    }
+
+    static ResultadoLote fallo(long indice, Long id, HttpStatus estado, String error) {
+        return new ResultadoLote(indice, id, estado.value(), error);
+    }
+}
@@ -0,0 +1,45 @@
+package com.henrry.Api_crud.Controllers;
+
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utilidades para responder listados paginados por cursor.
+ * El cursor de la página siguiente viaja en el encabezado {@value #ENCABEZADO_CURSOR}.
+ */
+final class Paginacion {
+
+    static final String ENCABEZADO_CURSOR = "X-Siguiente-Cursor";
+    static final int LIMITE_POR_DEFECTO = 100;
+    static final int LIMITE_MAXIMO = 1000;
+
+    private Paginacion() {
+    }
+
+    /**
+     * Ajusta el límite pedido por el cliente al rango [1, {@value #LIMITE_MAXIMO}].
+     */
+    static int limite(int solicitado) {
+        return Math.max(1, Math.min(solicitado, LIMITE_MAXIMO));
+    }
+
+    /**
+     * Arma la respuesta de una página. El Flux debe traer hasta {@code limite + 1} elementos:
+     * si llega el elemento extra, hay más páginas y el id del último elemento devuelto es el cursor.
+     */
+    static <T> Mono<ResponseEntity<List<T>>> responder(Flux<T> elementos, int limite, Function<T, Long> id) {
+        return elementos.collectList().map(pagina -> {
+            if (pagina.size() <= limite) {
+                return ResponseEntity.ok(pagina);
+            }
+            List<T> recortada = pagina.subList(0, limite);
+            return ResponseEntity.ok()
+                    .header(ENCABEZADO_CURSOR, String.valueOf(id.apply(recortada.get(limite - 1))))
+                    .body(recortada);
+        });
+    }
+}
@@ -1,16 +1,25 @@
 package com.henrry.Api_crud.Controllers;
 
+import com.henrry.Api_crud.Models.EstadisticasPedidos;
+import com.henrry.Api_crud.Models.FiltroPedido;
 import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.ResultadoLote;
+import com.henrry.Api_crud.Models.ResumenPedidos;
+import com.henrry.Api_crud.Service.ConflictoVersionException;
 import com.henrry.Api_crud.Service.PedidoService;
-import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoNoEncontradoException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.security.Principal;
+import java.util.List;
 import java.util.Locale;
 
 @RestController
@@ -27,68 +36,145 @@ public class PedidoController {
     @Autowired
     private MessageSource messageSource;
 
+    @Autowired
+    private Idempotencia idempotencia;
+
     /**
      * Método para agregar un nuevo Pedido.
      * Recibe un objeto Pedido en el cuerpo de la solicitud y lo guarda en la base de datos.
+     * Si trae 'productoId', el nombre del producto y el precio total los pone el servidor a partir del catálogo.
+     * Con 'Idempotency-Key' un reintento con la misma llave recibe el Pedido ya creado, sin crear otro.
      *
      * @param Pedido El objeto Pedido que se desea agregar.
-     * @return ResponseEntity con el Pedido creado y el código de estado HTTP 201 (CREATED).
+     * @param llave  Llave de idempotencia elegida por el cliente (opcional).
+     * @return ResponseEntity con el Pedido creado y el código de estado HTTP 201 (CREATED),
+     *         un código de estado HTTP 400 (BAD REQUEST) si el producto no existe,
+     *         o un código de estado HTTP 422 (UNPROCESSABLE ENTITY) si la llave ya se usó con otro Pedido.
      */
     @PostMapping
-    public ResponseEntity<Mono<Pedido>> agregarPedido(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@RequestBody Pedido Pedido) {
-        Locale locale = parseLocale(acceptLanguage);
-        return ResponseEntity.status(HttpStatus.CREATED).body(pedidoService.agregarPedido(Pedido,locale));
+    public Mono<ResponseEntity<Pedido>> agregarPedido(Locale locale, @RequestBody Pedido Pedido,
+                                                      @RequestHeader(name = Idempotencia.ENCABEZADO, required = false) String llave,
+                                                      Principal usuario) {
+        return idempotencia.ejecutar(usuario.getName(), "POST /api/pedidos", llave, Pedido, () -> pedidoService.agregarPedido(Pedido,locale)
+                .map(creado -> ResponseEntity.status(HttpStatus.CREATED).body(creado))
+                .onErrorResume(ProductoNoEncontradoException.class, e -> Mono.just(ResponseEntity.badRequest().build())));
     }
 
 
     /**
-     * Método para listar todos los Pedidos según el idioma solicitado.
-     * Retorna una lista de todos los Pedidos disponibles en la base de datos filtrados por idioma.
+     * Método para listar los Pedidos según el idioma solicitado, paginados por cursor.
+     * Retorna una página de Pedidos ordenados por id que cumplen los filtros indicados.
+     * Si hay más Pedidos, el encabezado 'X-Siguiente-Cursor' trae el valor de 'cursor' para pedir la siguiente página.
      *
-     * @param acceptLanguage El encabezado 'Accept-Language' que indica el idioma solicitado.
-     * @return ResponseEntity con un Flux de Pedidos y el código de estado HTTP 200 (OK).
+     * @param locale Idioma solicitado, resuelto a partir del encabezado 'Accept-Language'.
+     * @param filtro Filtros opcionales: cliente, producto, cantidadMin y cantidadMax.
+     * @param cursor Id del último Pedido de la página anterior (opcional).
+     * @param limit  Tamaño máximo de la página (100 por defecto, 1000 como máximo).
+     * @return ResponseEntity con la página de Pedidos y el código de estado HTTP 200 (OK).
      */
     @GetMapping
-    public ResponseEntity<Flux<Pedido>> listarPedidos(
-            @RequestHeader(name = "Accept-Language", required = false) String acceptLanguage) {
-        Locale locale = parseLocale(acceptLanguage); // Obtener el Locale del encabezado
-        Flux<Pedido> pedidos = pedidoService.listarPedidos(locale);
-        return ResponseEntity.ok(pedidos);
+    public Mono<ResponseEntity<List<Pedido>>> listarPedidos(Locale locale, FiltroPedido filtro,
+                                                            @RequestParam(required = false) Long cursor,
+                                                            @RequestParam(defaultValue = "" + Paginacion.LIMITE_POR_DEFECTO) int limit) {
+        int limite = Paginacion.limite(limit);
+        Flux<Pedido> pedidos = pedidoService.listarPedidos(locale, filtro, cursor, limite + 1);
+        return Paginacion.responder(pedidos, limite, Pedido::getId);
+    }
+
+    /**
+     * Método para transmitir todos los Pedidos como flujo (NDJSON o Server-Sent Events).
+     * Cada Pedido se escribe en cuanto se produce, respetando la contrapresión del cliente,
+     * así que no se arma el arreglo JSON completo en memoria. Acepta los mismos filtros que el listado.
+     *
+     * @param locale Idioma solicitado, resuelto a partir del encabezado 'Accept-Language'.
+     * @param filtro Filtros opcionales: cliente, producto, cantidadMin y cantidadMax.
+     * @return Un Flux de Pedidos que se envía elemento a elemento.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Pedido> transmitirPedidos(Locale locale, FiltroPedido filtro) {
+        return pedidoService.listarPedidos(locale, filtro, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Método para obtener las estadísticas de los Pedidos del idioma solicitado.
+     * Devuelve el total de Pedidos, unidades e importe (suma de precioTotal) y los clientes y productos
+     * con mayor importe. Se calcula con totales que se mantienen al día en cada escritura, sin recorrer los Pedidos.
+     *
+     * @param locale Idioma solicitado; los importes van en su moneda.
+     * @param top    Cuántos clientes y productos devolver (10 por defecto, 1000 como máximo).
+     * @return ResponseEntity con las estadísticas y el código de estado HTTP 200 (OK).
+     */
+    @GetMapping("/stats")
+    public Mono<ResponseEntity<EstadisticasPedidos>> obtenerEstadisticas(Locale locale, @RequestParam(defaultValue = "10") int top) {
+        return pedidoService.estadisticas(locale, Paginacion.limite(top)).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Método para obtener los totales de los Pedidos de un cliente.
+     *
+     * @param cliente El nombre del cliente.
+     * @return ResponseEntity con los totales y el código de estado HTTP 200 (OK),
+     *         o un código de estado HTTP 404 (NOT FOUND) si el cliente no tiene Pedidos.
+     */
+    @GetMapping("/stats/clientes/{cliente}")
+    public Mono<ResponseEntity<ResumenPedidos>> obtenerEstadisticasCliente(Locale locale, @PathVariable String cliente) {
+        return pedidoService.estadisticasCliente(cliente, locale)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Método para obtener los totales de los Pedidos de un producto.
+     *
+     * @param producto El nombre del producto.
+     * @return ResponseEntity con los totales y el código de estado HTTP 200 (OK),
+     *         o un código de estado HTTP 404 (NOT FOUND) si el producto no tiene Pedidos.
+     */
+    @GetMapping("/stats/productos/{producto}")
+    public Mono<ResponseEntity<ResumenPedidos>> obtenerEstadisticasProducto(Locale locale, @PathVariable String producto) {
+        return pedidoService.estadisticasProducto(producto, locale)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     /**
      * Método para obtener un Pedido por su ID.
      * Busca un Pedido en la base de datos utilizando el ID proporcionado en la URL.
+     * El ETag es la versión del Pedido, que se usa en 'If-Match' al actualizarlo.
      *
      * @param id El ID del Pedido que se desea obtener.
      * @return ResponseEntity con el Pedido encontrado y el código de estado HTTP 200 (OK),
      *         o un código de estado HTTP 404 (NOT FOUND) si el Pedido no existe.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Mono<Pedido>> obtenerPedidoPorId(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@PathVariable Long id) {
-        Locale locale = parseLocale(acceptLanguage);
-        Mono<Pedido> Pedido = pedidoService.obtenerPedidoPorId(id,locale);
-        return ResponseEntity.ok(Pedido);
+    public Mono<ResponseEntity<Pedido>> obtenerPedidoPorId(Locale locale, @PathVariable Long id) {
+        return pedidoService.obtenerPedidoPorId(id,locale)
+                .map(pedido -> ResponseEntity.ok().eTag(CacheHttp.etag(locale, pedido.getVersion())).body(pedido))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     /**
      * Método para actualizar un Pedido existente.
      * Recibe un objeto Pedido en el cuerpo de la solicitud y lo actualiza en la base de datos.
      * El ID del Pedido debe coincidir con el ID proporcionado en la URL.
+     * Con 'If-Match' (el ETag de GET /{id}) solo se actualiza si nadie cambió el Pedido desde entonces.
      *
      * @param id El ID del Pedido que se desea actualizar.
      * @param Pedido El objeto Pedido con los nuevos datos.
-     * @return ResponseEntity con el Pedido actualizado y el código de estado HTTP 200 (OK),
-     *         o un código de estado HTTP 404 (NOT FOUND) si el Pedido no existe.
+     * @return ResponseEntity con el Pedido actualizado, su nuevo ETag y el código de estado HTTP 200 (OK),
+     *         un código de estado HTTP 404 (NOT FOUND) si el Pedido no existe,
+     *         un código de estado HTTP 412 (PRECONDITION FAILED) si la versión no coincide,
+     *         o un código de estado HTTP 400 (BAD REQUEST) si el producto no existe.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Mono<Pedido>> actualizarPedido(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@PathVariable Long id, @RequestBody Pedido Pedido) {
-        Locale locale = parseLocale(acceptLanguage);
+    public Mono<ResponseEntity<Pedido>> actualizarPedido(Locale locale, @PathVariable Long id, @RequestBody Pedido Pedido,
+                                                         ServerWebExchange exchange) {
         Pedido.setId(id); // Asegurarse de que el ID coincida con el del path
-        Mono<Pedido> PedidoActualizado = pedidoService.actualizarPedido(Pedido,locale);
-        return PedidoActualizado != null
-                ? ResponseEntity.ok(PedidoActualizado)
-                : ResponseEntity.notFound().build();
+        return pedidoService.actualizarPedido(Pedido, locale, CacheHttp.versionEsperada(exchange, locale))
+                .map(actualizado -> ResponseEntity.ok().eTag(CacheHttp.etag(locale, actualizado.getVersion())).body(actualizado))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(ConflictoVersionException.class, conflicto -> Mono.just(CacheHttp.conflicto(locale, conflicto)))
+                .onErrorResume(ProductoNoEncontradoException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
     }
 
     /**
@@ -99,33 +185,54 @@ public class PedidoController {
      * @return ResponseEntity con el código de estado HTTP 204 (NO CONTENT) si la eliminación fue exitosa.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> eliminarPedido(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@PathVariable Long id) {
-        Locale locale = parseLocale(acceptLanguage);
-        pedidoService.eliminarPedido(id,locale);
-        return ResponseEntity.noContent().build();
+    public Mono<ResponseEntity<Void>> eliminarPedido(Locale locale, @PathVariable Long id) {
+        return pedidoService.eliminarPedido(id,locale).thenReturn(ResponseEntity.noContent().build());
     }
 
     /**
-     * Convierte una cadena de locale en un objeto Locale.
-     * Si la cadena es vacía o nula, se utiliza el locale por defecto del sistema.
+     * Método para crear pedidos en lote.
+     * Recibe un arreglo JSON o un flujo NDJSON de Pedidos y los crea en bloques.
+     * Si un Pedido hace referencia a un producto que no existe, se informa con 400 y los demás se crean igual.
      *
-     * @param acceptLanguage Cadena de locale proporcionada en el encabezado 'Accept-Language'.
-     * @return Objeto Locale correspondiente a la cadena proporcionada.
+     * @param pedidos Los Pedidos que se desean agregar.
+     * @return Un resultado por elemento, en el mismo orden, con el id asignado y el estado 201 (CREATED).
      */
-    private Locale parseLocale(String acceptLanguage) {
-        if (acceptLanguage == null || acceptLanguage.isEmpty()) {
-            return Locale.getDefault();
-        }
-        // Tomar solo la primera parte antes de la coma
-        // Ej: Locale part "es-ES,es;q=0.8,en-US;q=0.5,en;q=0.3"
-        String primaryLocale = acceptLanguage.split(",")[0].trim();
-        try {
-            return Locale.forLanguageTag(primaryLocale);
-        } catch (IllegalArgumentException e) {
-            // Manejar el caso donde el tag de locale no es válido
-            return Locale.getDefault();
-        }
+    @PostMapping("/lote")
+    public Flux<ResultadoLote> agregarPedidosEnLote(Locale locale, @RequestBody Flux<Pedido> pedidos) {
+        return Lotes.porBloques(pedidos, pedido -> pedidoService.revisarProducto(pedido, locale),
+                bloque -> pedidoService.agregarPedidos(bloque, locale), Pedido::getId, HttpStatus.CREATED);
     }
 
+    /**
+     * Método para actualizar pedidos en lote.
+     * Cada elemento debe traer su id; los que no existen se informan con 404 sin detener el lote.
+     * Si un elemento trae 'version', solo se actualiza si es la guardada; si no, se informa con 412.
+     *
+     * @param pedidos Los Pedidos con los nuevos datos.
+     * @return Un resultado por elemento, en el mismo orden.
+     */
+    @PutMapping("/lote")
+    public Flux<ResultadoLote> actualizarPedidosEnLote(Locale locale, @RequestBody Flux<Pedido> pedidos) {
+        return Lotes.porElemento(pedidos, (indice, pedido) -> pedido.getId() == null
+                ? Mono.just(Lotes.fallo(indice, null, HttpStatus.BAD_REQUEST, "Falta el id"))
+                : pedidoService.actualizarPedido(pedido, locale, pedido.getVersion())
+                        .map(actualizado -> Lotes.exito(indice, actualizado.getId(), HttpStatus.OK))
+                        .defaultIfEmpty(Lotes.fallo(indice, pedido.getId(), HttpStatus.NOT_FOUND, "No existe"))
+                        .onErrorResume(ConflictoVersionException.class, conflicto ->
+                                Mono.just(Lotes.fallo(indice, pedido.getId(), HttpStatus.PRECONDITION_FAILED, conflicto.getMessage())))
+                        .onErrorResume(ProductoNoEncontradoException.class, e ->
+                                Mono.just(Lotes.fallo(indice, pedido.getId(), HttpStatus.BAD_REQUEST, e.getMessage()))));
+    }
 
+    /**
+     * Método para eliminar pedidos en lote.
+     *
+     * @param ids Los ids de los Pedidos que se desean eliminar (arreglo JSON o flujo NDJSON).
+     * @return Un resultado por elemento, en el mismo orden, con el estado 204 (NO CONTENT).
+     */
+    @DeleteMapping("/lote")
+    public Flux<ResultadoLote> eliminarPedidosEnLote(Locale locale, @RequestBody Flux<Long> ids) {
+        return Lotes.porElemento(ids, (indice, id) -> pedidoService.eliminarPedido(id, locale)
+                .thenReturn(Lotes.exito(indice, id, HttpStatus.NO_CONTENT)));
+    }
 }
@@ -1,18 +1,25 @@
 package com.henrry.Api_crud.Controllers;
 
+import com.henrry.Api_crud.Models.FiltroProducto;
 import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Models.ResultadoLote;
+import com.henrry.Api_crud.Service.ConflictoVersionException;
 import com.henrry.Api_crud.Service.ProductoService;
+import com.henrry.Api_crud.Service.RevisionCatalogo;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
@@ -29,6 +36,9 @@ public class ProductoController {
     @Autowired
     private MessageSource messageSource;
 
+    @Autowired
+    private CacheRespuestas cacheRespuestas;
+
     /**
      * Método para agregar un nuevo producto.
      * Recibe un objeto Producto en el cuerpo de la solicitud y lo guarda en la base de datos.
@@ -37,56 +47,108 @@ public class ProductoController {
      * @return ResponseEntity con el producto creado y el código de estado HTTP 201 (CREATED).
      */
     @PostMapping
-    public ResponseEntity<Mono<Producto>> agregarProducto(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@RequestBody @NotNull Producto producto) {
-        Locale locale = parseLocale(acceptLanguage);
+    public ResponseEntity<Mono<Producto>> agregarProducto(Locale locale, @RequestBody @NotNull Producto producto) {
         return ResponseEntity.status(HttpStatus.CREATED).body(productoService.agregarProducto(producto,locale));
     }
 
     /**
-     * Método para listar todos los productos.
-     * Retorna una lista de todos los productos disponibles en la base de datos.
+     * Método para listar los productos, paginados por cursor.
+     * Retorna una página de productos ordenados por id que cumplen los filtros indicados.
+     * Si hay más productos, el encabezado 'X-Siguiente-Cursor' trae el valor de 'cursor' para pedir la siguiente página.
+     * La respuesta lleva ETag y Last-Modified según la revisión del catálogo; si no cambió se responde 304.
+     * El JSON de cada página se guarda ya serializado por idioma, parámetros y revisión del catálogo.
      *
-     * @return ResponseEntity con un Flux de Productos y el código de estado HTTP 200 (OK).
+     * @param filtro Filtros opcionales: precioMin y precioMax.
+     * @param cursor Id del último producto de la página anterior (opcional).
+     * @param limit  Tamaño máximo de la página (100 por defecto, 1000 como máximo).
+     * @return ResponseEntity con la página de productos y el código de estado HTTP 200 (OK).
      */
     @GetMapping
-    public ResponseEntity<Flux<Producto>> listarProductos(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage) {
-        Locale locale = parseLocale(acceptLanguage);
-        return ResponseEntity.ok(productoService.listarProductos(locale));
+    public Mono<ResponseEntity<byte[]>> listarProductos(Locale locale, FiltroProducto filtro,
+                                                        @RequestParam(required = false) Long cursor,
+                                                        @RequestParam(defaultValue = "" + Paginacion.LIMITE_POR_DEFECTO) int limit,
+                                                        ServerWebExchange exchange) {
+        int limite = Paginacion.limite(limit);
+        RevisionCatalogo revision = productoService.revision();
+        String endpoint = exchange.getRequest().getPath().value() + "?" + Objects.toString(exchange.getRequest().getURI().getRawQuery(), "");
+        return CacheHttp.siModificado(exchange, locale, revision, () -> cacheRespuestas.obtener(endpoint, locale, revision.numero(),
+                MediaType.APPLICATION_JSON, () -> {
+                    Flux<Producto> productos = productoService.listarProductos(locale, filtro, cursor, limite + 1);
+                    return Paginacion.responder(productos, limite, Producto::getId);
+                }));
+    }
+
+    /**
+     * Método para transmitir todos los productos como flujo (NDJSON o Server-Sent Events).
+     * Cada producto se escribe en cuanto se produce, respetando la contrapresión del cliente.
+     * Acepta los mismos filtros que el listado.
+     *
+     * @param filtro Filtros opcionales: precioMin y precioMax.
+     * @return Un Flux de Productos que se envía elemento a elemento.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Producto> transmitirProductos(Locale locale, FiltroProducto filtro) {
+        return productoService.listarProductos(locale, filtro, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Método para buscar productos por nombre en el catálogo del idioma, paginados por cursor.
+     * No distingue acentos ni mayúsculas, y la última palabra puede estar incompleta ("televiseur sam"
+     * encuentra "Téléviseur Samsung"), así que sirve para autocompletar.
+     *
+     * @param q      Texto buscado.
+     * @param cursor Id del último producto de la página anterior (opcional).
+     * @param limit  Tamaño máximo de la página (100 por defecto, 1000 como máximo).
+     * @return ResponseEntity con los productos encontrados, ordenados por id, y el código de estado HTTP 200 (OK).
+     */
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<Producto>>> buscarProductos(Locale locale, @RequestParam String q,
+                                                                @RequestParam(required = false) Long cursor,
+                                                                @RequestParam(defaultValue = "" + Paginacion.LIMITE_POR_DEFECTO) int limit) {
+        int limite = Paginacion.limite(limit);
+        Flux<Producto> productos = productoService.buscarProductos(q, locale, cursor, limite + 1);
+        return Paginacion.responder(productos, limite, Producto::getId);
     }
 
     /**
      * Método para obtener un producto por su ID.
      * Busca un producto en la base de datos utilizando el ID proporcionado en la URL.
+     * El ETag es la versión del producto (se usa en 'If-Match' al actualizarlo); responde 304 si el
+     * cliente ya tiene esa versión.
      *
      * @param id El ID del producto que se desea obtener.
      * @return ResponseEntity con el producto encontrado y el código de estado HTTP 200 (OK),
      *         o un código de estado HTTP 404 (NOT FOUND) si el producto no existe.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Mono<Producto>> obtenerProductoPorId(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@PathVariable @NotNull Long id) {
-        Locale locale = parseLocale(acceptLanguage);
-        Mono<Producto> producto = productoService.obtenerProductoPorId(id,locale);
-        return ResponseEntity.ok(producto);
+    public Mono<ResponseEntity<Producto>> obtenerProductoPorId(Locale locale, @PathVariable @NotNull Long id, ServerWebExchange exchange) {
+        RevisionCatalogo revision = productoService.revision();
+        return productoService.obtenerProductoPorId(id,locale)
+                .flatMap(producto -> CacheHttp.siModificado(exchange, CacheHttp.etag(locale, producto.getVersion()),
+                        revision.modificado(), () -> Mono.just(ResponseEntity.ok(producto))))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     /**
      * Método para actualizar un producto existente.
      * Recibe un objeto Producto en el cuerpo de la solicitud y lo actualiza en la base de datos.
      * El ID del producto debe coincidir con el ID proporcionado en la URL.
+     * Con 'If-Match' (el ETag de GET /{id}) solo se actualiza si nadie cambió el producto desde entonces.
      *
      * @param id El ID del producto que se desea actualizar.
      * @param producto El objeto Producto con los nuevos datos.
-     * @return ResponseEntity con el producto actualizado y el código de estado HTTP 200 (OK),
-     *         o un código de estado HTTP 404 (NOT FOUND) si el producto no existe.
+     * @return ResponseEntity con el producto actualizado, su nuevo ETag y el código de estado HTTP 200 (OK),
+     *         un código de estado HTTP 404 (NOT FOUND) si el producto no existe,
+     *         o un código de estado HTTP 412 (PRECONDITION FAILED) si la versión no coincide.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Mono<Producto>> actualizarProducto(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@PathVariable @NotNull Long id, @RequestBody @NotNull Producto producto) {
-        Locale locale = parseLocale(acceptLanguage);
+    public Mono<ResponseEntity<Producto>> actualizarProducto(Locale locale, @PathVariable @NotNull Long id, @RequestBody @NotNull Producto producto,
+                                                             ServerWebExchange exchange) {
         producto.setId(id); // Asegurarse de que el ID coincida con el del path
-        Mono<Producto> productoActualizado = productoService.actualizarProducto(producto,locale);
-        return productoActualizado != null
-                ? ResponseEntity.ok(productoActualizado)
-                : ResponseEntity.notFound().build();
+        return productoService.actualizarProducto(producto, locale, CacheHttp.versionEsperada(exchange, locale))
+                .map(actualizado -> ResponseEntity.ok().eTag(CacheHttp.etag(locale, actualizado.getVersion())).body(actualizado))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(ConflictoVersionException.class, conflicto -> Mono.just(CacheHttp.conflicto(locale, conflicto)));
     }
 
     /**
@@ -97,31 +159,50 @@ public class ProductoController {
      * @return ResponseEntity con el código de estado HTTP 204 (NO CONTENT) si la eliminación fue exitosa.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> eliminarProducto(@RequestHeader(name = "Accept-Language", required = false) String acceptLanguage,@PathVariable Long id) {
-        Locale locale = parseLocale(acceptLanguage);
-        productoService.eliminarProducto(id,locale);
-        return ResponseEntity.noContent().build();
+    public Mono<ResponseEntity<Void>> eliminarProducto(Locale locale, @PathVariable Long id) {
+        return productoService.eliminarProducto(id,locale).thenReturn(ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Método para crear productos en lote.
+     * Recibe un arreglo JSON o un flujo NDJSON de Productos y los crea en bloques.
+     *
+     * @param productos Los Productos que se desean agregar.
+     * @return Un resultado por elemento, en el mismo orden, con el id asignado y el estado 201 (CREATED).
+     */
+    @PostMapping("/lote")
+    public Flux<ResultadoLote> agregarProductosEnLote(Locale locale, @RequestBody Flux<Producto> productos) {
+        return Lotes.porBloques(productos, bloque -> productoService.agregarProductos(bloque, locale), Producto::getId, HttpStatus.CREATED);
+    }
+
+    /**
+     * Método para actualizar productos en lote.
+     * Cada elemento debe traer su id; los que no existen se informan con 404 sin detener el lote.
+     * Si un elemento trae 'version', solo se actualiza si es la guardada; si no, se informa con 412.
+     *
+     * @param productos Los Productos con los nuevos datos.
+     * @return Un resultado por elemento, en el mismo orden.
+     */
+    @PutMapping("/lote")
+    public Flux<ResultadoLote> actualizarProductosEnLote(Locale locale, @RequestBody Flux<Producto> productos) {
+        return Lotes.porElemento(productos, (indice, producto) -> producto.getId() == null
+                ? Mono.just(Lotes.fallo(indice, null, HttpStatus.BAD_REQUEST, "Falta el id"))
+                : productoService.actualizarProducto(producto, locale, producto.getVersion())
+                        .map(actualizado -> Lotes.exito(indice, actualizado.getId(), HttpStatus.OK))
+                        .defaultIfEmpty(Lotes.fallo(indice, producto.getId(), HttpStatus.NOT_FOUND, "No existe"))
+                        .onErrorResume(ConflictoVersionException.class, conflicto ->
+                                Mono.just(Lotes.fallo(indice, producto.getId(), HttpStatus.PRECONDITION_FAILED, conflicto.getMessage()))));
     }
 
     /**
-     * Convierte una cadena de locale en un objeto Locale.
-     * Si la cadena es vacía o nula, se utiliza el locale por defecto del sistema.
+     * Método para eliminar productos en lote.
      *
-     * @param acceptLanguage Cadena de locale proporcionada en el encabezado 'Accept-Language'.
-     * @return Objeto Locale correspondiente a la cadena proporcionada.
+     * @param ids Los ids de los Productos que se desean eliminar (arreglo JSON o flujo NDJSON).
+     * @return Un resultado por elemento, en el mismo orden, con el estado 204 (NO CONTENT).
      */
-    private Locale parseLocale(String acceptLanguage) {
-        if (acceptLanguage == null || acceptLanguage.isEmpty()) {
-            return Locale.getDefault();
-        }
-        // Tomar solo la primera parte antes de la coma
-        // Ej: Locale part "es-ES,es;q=0.8,en-US;q=0.5,en;q=0.3"
-        String primaryLocale = acceptLanguage.split(",")[0].trim();
-        try {
-            return Locale.forLanguageTag(primaryLocale);
-        } catch (IllegalArgumentException e) {
-            // Manejar el caso donde el tag de locale no es válido
-            return Locale.getDefault();
-        }
+    @DeleteMapping("/lote")
+    public Flux<ResultadoLote> eliminarProductosEnLote(Locale locale, @RequestBody Flux<Long> ids) {
+        return Lotes.porElemento(ids, (indice, id) -> productoService.eliminarProducto(id, locale)
+                .thenReturn(Lotes.exito(indice, id, HttpStatus.NO_CONTENT)));
     }
 }
@@ -3,12 +3,14 @@ package com.henrry.Api_crud.Controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 
 
@@ -19,6 +21,13 @@ import java.util.Locale;
 @RequestMapping("/public/api")
 public class SaludoController {
 
+    /**
+     * Los mensajes se cargan una sola vez al arrancar, así que su versión nunca cambia.
+     */
+    private static final long VERSION_MENSAJES = 0;
+
+    private static final MediaType TEXTO_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
     /**
      * Fuente de mensajes internacionalizados.
      * Esta inyección permite acceder a mensajes traducidos según el locale del usuario.
@@ -26,30 +35,16 @@ public class SaludoController {
     @Autowired
     private MessageSource messageSource;
 
-    @GetMapping("/saludo")
-    public Mono<String> obtenerSaludo(@RequestHeader(name = "Accept-Language", required = false) String locale) {
-        return Mono.just(messageSource.getMessage("saludo", null, parseLocale(locale)));
-    }
+    @Autowired
+    private CacheRespuestas cacheRespuestas;
 
     /**
-     * Convierte una cadena de locale en un objeto Locale.
-     * Si la cadena es vacía o nula, se utiliza el locale por defecto del sistema.
-     *
-     * @param acceptLanguage Cadena de locale proporcionada en el encabezado 'Accept-Language'.
-     * @return Objeto Locale correspondiente a la cadena proporcionada.
+     * Devuelve el saludo en el idioma solicitado. El texto se resuelve una vez por idioma
+     * y luego se sirve desde la caché de respuestas ya codificadas.
      */
-    private Locale parseLocale(String acceptLanguage) {
-        if (acceptLanguage == null || acceptLanguage.isEmpty()) {
-            return Locale.getDefault();
-        }
-        // Tomar solo la primera parte antes de la coma
-        //ej: Locale part "es-ES,es;q=0.8,en-US;q=0.5,en;q=0.3"
-        String primaryLocale = acceptLanguage.split(",")[0].trim();
-        try {
-            return Locale.forLanguageTag(primaryLocale);
-        } catch (IllegalArgumentException e) {
-            // Manejar el caso donde el tag de locale no es válido
-            return Locale.getDefault();
-        }
+    @GetMapping("/saludo")
+    public Mono<ResponseEntity<byte[]>> obtenerSaludo(Locale locale) {
+        return cacheRespuestas.obtener("saludo", locale, VERSION_MENSAJES, TEXTO_UTF8,
+                () -> Mono.fromSupplier(() -> ResponseEntity.ok(messageSource.getMessage("saludo", null, locale))));
     }
 }
@@ -0,0 +1,57 @@
+package com.henrry.Api_crud.Models;
+
+import java.util.List;
+
+
+/**
+ * Estadísticas de los pedidos de un idioma: el total y los clientes y productos con mayor importe.
+ */
+public class EstadisticasPedidos {
+    /**
+     * Totales de todos los pedidos.
+     */
+    private ResumenPedidos total;
+
+    /**
+     * Clientes ordenados por importe, de mayor a menor.
+     */
+    private List<ResumenPedidos> clientes;
+
+    /**
+     * Productos ordenados por importe, de mayor a menor.
+     */
+    private List<ResumenPedidos> productos;
+
+    public EstadisticasPedidos() {
+    }
+
+    public EstadisticasPedidos(ResumenPedidos total, List<ResumenPedidos> clientes, List<ResumenPedidos> productos) {
+        this.total = total;
+        this.clientes = clientes;
+        this.productos = productos;
+    }
+
+    public ResumenPedidos getTotal() {
+        return total;
+    }
+
+    public void setTotal(ResumenPedidos total) {
+        this.total = total;
+    }
+
+    public List<ResumenPedidos> getClientes() {
+        return clientes;
+    }
+
+    public void setClientes(List<ResumenPedidos> clientes) {
+        this.clientes = clientes;
+    }
+
+    public List<ResumenPedidos> getProductos() {
+        return productos;
+    }
+
+    public void setProductos(List<ResumenPedidos> productos) {
+        this.productos = productos;
+    }
+}
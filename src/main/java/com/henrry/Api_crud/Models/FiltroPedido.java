@@ -0,0 +1,87 @@
+package com.henrry.Api_crud.Models;
+
+
+/**
+ * Filtros opcionales para listar pedidos. Los campos nulos o vacíos no filtran.
+ */
+public class FiltroPedido {
+    /**
+     * Cliente exacto del pedido.
+     */
+    private String cliente;
+
+    /**
+     * Producto exacto del pedido.
+     */
+    private String producto;
+
+    /**
+     * Cantidad mínima (inclusive).
+     */
+    private Integer cantidadMin;
+
+    /**
+     * Cantidad máxima (inclusive).
+     */
+    private Integer cantidadMax;
+
+    public FiltroPedido() {
+    }
+
+    public FiltroPedido(String cliente, String producto, Integer cantidadMin, Integer cantidadMax) {
+        this.cliente = cliente;
+        this.producto = producto;
+        this.cantidadMin = cantidadMin;
+        this.cantidadMax = cantidadMax;
+    }
+
+    /**
+     * Indica si el pedido cumple todos los filtros.
+     */
+    public boolean cumple(Pedido pedido) {
+        return (!tieneCliente() || cliente.equals(pedido.getCliente()))
+                && (!tieneProducto() || producto.equals(pedido.getProducto()))
+                && (cantidadMin == null || pedido.getCantidad() >= cantidadMin)
+                && (cantidadMax == null || pedido.getCantidad() <= cantidadMax);
+    }
+
+    public boolean tieneCliente() {
+        return cliente != null && !cliente.isEmpty();
+    }
+
+    public boolean tieneProducto() {
+        return producto != null && !producto.isEmpty();
+    }
+
+    public String getCliente() {
+        return cliente;
+    }
+
+    public void setCliente(String cliente) {
+        this.cliente = cliente;
+    }
+
+    public String getProducto() {
+        return producto;
+    }
+
+    public void setProducto(String producto) {
+        this.producto = producto;
+    }
+
+    public Integer getCantidadMin() {
+        return cantidadMin;
+    }
+
+    public void setCantidadMin(Integer cantidadMin) {
+        this.cantidadMin = cantidadMin;
+    }
+
+    public Integer getCantidadMax() {
+        return cantidadMax;
+    }
+
+    public void setCantidadMax(Integer cantidadMax) {
+        this.cantidadMax = cantidadMax;
+    }
+}
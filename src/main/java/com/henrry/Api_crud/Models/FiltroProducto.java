@@ -0,0 +1,50 @@
+package com.henrry.Api_crud.Models;
+
+
+/**
+ * Filtros opcionales para listar productos. Los campos nulos no filtran.
+ */
+public class FiltroProducto {
+    /**
+     * Precio mínimo (inclusive).
+     */
+    private Double precioMin;
+
+    /**
+     * Precio máximo (inclusive).
+     */
+    private Double precioMax;
+
+    public FiltroProducto() {
+    }
+
+    public FiltroProducto(Double precioMin, Double precioMax) {
+        this.precioMin = precioMin;
+        this.precioMax = precioMax;
+    }
+
+    /**
+     * Indica si el producto cumple todos los filtros.
+     */
+    public boolean cumple(Producto producto) {
+        Double precio = producto.getPrecio();
+        return (precioMin == null || (precio != null && precio >= precioMin))
+                && (precioMax == null || (precio != null && precio <= precioMax));
+    }
+
+    public Double getPrecioMin() {
+        return precioMin;
+    }
+
+    public void setPrecioMin(Double precioMin) {
+        this.precioMin = precioMin;
+    }
+
+    public Double getPrecioMax() {
+        return precioMax;
+    }
+
+    public void setPrecioMax(Double precioMax) {
+        this.precioMax = precioMax;
+    }
+}
@@ -6,8 +6,18 @@ public class Pedido {
     private Long id ;
     private String cliente;
     private String producto;
+    /**
+     * Id del producto del catálogo. Si viene, el servidor toma de él el nombre del producto
+     * y calcula precioTotal (precio del producto × cantidad); lo que traiga el cliente se ignora.
+     */
+    private Long productoId;
     private int cantidad;
     private double precioTotal;
+    /**
+     * Versión del pedido: la asigna el servidor y aumenta con cada actualización.
+     * Las instancias guardadas no se modifican; cada cambio guarda una copia.
+     */
+    private Long version;
 
     public Pedido() {
     }
@@ -20,6 +30,16 @@ public class Pedido {
         this.precioTotal = precioTotal;
     }
 
+    public Pedido(Long id, String cliente, String producto, int cantidad, double precioTotal, Long version) {
+        this(id, cliente, producto, cantidad, precioTotal);
+        this.version = version;
+    }
+
+    public Pedido(Long id, String cliente, String producto, Long productoId, int cantidad, double precioTotal, Long version) {
+        this(id, cliente, producto, cantidad, precioTotal, version);
+        this.productoId = productoId;
+    }
+
     public Long getId() {
         return id;
     }
@@ -44,6 +64,14 @@ public class Pedido {
         this.producto = producto;
     }
 
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
     public int getCantidad() {
         return cantidad;
     }
@@ -60,14 +88,24 @@ public class Pedido {
         this.precioTotal = precioTotal;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Pedido{" +
                 "id=" + id +
                 ", cliente='" + cliente + '\'' +
                 ", producto='" + producto + '\'' +
+                ", productoId=" + productoId +
                 ", cantidad=" + cantidad +
                 ", precioTotal=" + precioTotal +
+                ", version=" + version +
                 '}';
     }
 }
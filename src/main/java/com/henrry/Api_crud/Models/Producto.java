@@ -17,6 +17,12 @@ public class Producto {
      */
     private Double precio;
 
+    /**
+     * Versión del producto: la asigna el servidor y aumenta con cada actualización.
+     * Las instancias guardadas no se modifican; cada actualización guarda una copia con la versión siguiente.
+     */
+    private Long version;
+
     public Producto() {
     }
 
@@ -26,6 +32,11 @@ public class Producto {
         this.precio = precio;
     }
 
+    public Producto(Long id, String nombre, Double precio, Long version) {
+        this(id, nombre, precio);
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -49,4 +60,12 @@ public class Producto {
     public void setPrecio(Double precio) {
         this.precio = precio;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,69 @@
+package com.henrry.Api_crud.Models;
+
+
+/**
+ * Resultado de una operación dentro de un lote.
+ */
+public class ResultadoLote {
+    /**
+     * Posición del elemento en el lote recibido, empezando en 0.
+     */
+    private long indice;
+
+    /**
+     * Id del elemento afectado, si se conoce.
+     */
+    private Long id;
+
+    /**
+     * Código de estado HTTP equivalente a la operación individual (201, 200, 204, 400, 404...).
+     */
+    private int estado;
+
+    /**
+     * Mensaje de error, o null si la operación fue exitosa.
+     */
+    private String error;
+
+    public ResultadoLote() {
+    }
+
+    public ResultadoLote(long indice, Long id, int estado, String error) {
+        this.indice = indice;
+        this.id = id;
+        this.estado = estado;
+        this.error = error;
+    }
+
+    public long getIndice() {
+        return indice;
+    }
+
+    public void setIndice(long indice) {
+        this.indice = indice;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public int getEstado() {
+        return estado;
+    }
+
+    public void setEstado(int estado) {
+        this.estado = estado;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
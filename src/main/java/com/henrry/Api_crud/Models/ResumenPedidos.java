@@ -0,0 +1,69 @@
+package com.henrry.Api_crud.Models;
+
+
+/**
+ * Totales de un grupo de pedidos: todos, los de un cliente o los de un producto.
+ */
+public class ResumenPedidos {
+    /**
+     * Cliente o producto del grupo, o null para el total general.
+     */
+    private String nombre;
+
+    /**
+     * Número de pedidos del grupo.
+     */
+    private long pedidos;
+
+    /**
+     * Suma de las cantidades de los pedidos.
+     */
+    private long unidades;
+
+    /**
+     * Suma de los precioTotal de los pedidos, en la moneda del idioma de la solicitud.
+     */
+    private double importe;
+
+    public ResumenPedidos() {
+    }
+
+    public ResumenPedidos(String nombre, long pedidos, long unidades, double importe) {
+        this.nombre = nombre;
+        this.pedidos = pedidos;
+        this.unidades = unidades;
+        this.importe = importe;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public long getPedidos() {
+        return pedidos;
+    }
+
+    public void setPedidos(long pedidos) {
+        this.pedidos = pedidos;
+    }
+
+    public long getUnidades() {
+        return unidades;
+    }
+
+    public void setUnidades(long unidades) {
+        this.unidades = unidades;
+    }
+
+    public double getImporte() {
+        return importe;
+    }
+
+    public void setImporte(double importe) {
+        this.importe = importe;
+    }
+}
@@ -0,0 +1,52 @@
+package com.henrry.Api_crud.Models;
+
+
+public class TokenAcceso {
+    /**
+     * Token firmado que se envía en el encabezado 'Authorization: Bearer ...'.
+     */
+    private String token;
+
+    /**
+     * Tipo de token, siempre "Bearer".
+     */
+    private String tipo;
+
+    /**
+     * Segundos de validez del token desde su emisión.
+     */
+    private long expiraEn;
+
+    public TokenAcceso() {
+    }
+
+    public TokenAcceso(String token, String tipo, long expiraEn) {
+        this.token = token;
+        this.tipo = tipo;
+        this.expiraEn = expiraEn;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+
+    public long getExpiraEn() {
+        return expiraEn;
+    }
+
+    public void setExpiraEn(long expiraEn) {
+        this.expiraEn = expiraEn;
+    }
+}
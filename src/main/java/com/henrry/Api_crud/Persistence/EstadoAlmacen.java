@@ -0,0 +1,17 @@
+package com.henrry.Api_crud.Persistence;
+
+import java.util.Map;
+
+/**
+ * Estado de un almacén recuperado al arrancar.
+ *
+ * @param entidades Entidades vigentes por id, codificadas como las guardó el servicio.
+ * @param ultimoId  Mayor id registrado en el almacén, incluidas las entidades eliminadas,
+ *                  para que los ids nunca se reutilicen.
+ */
+public record EstadoAlmacen(Map<Long, byte[]> entidades, long ultimoId) {
+
+    public static EstadoAlmacen vacio() {
+        return new EstadoAlmacen(Map.of(), 0);
+    }
+}
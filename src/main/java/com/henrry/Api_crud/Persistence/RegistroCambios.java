@@ -0,0 +1,49 @@
+package com.henrry.Api_crud.Persistence;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Registro durable de los cambios de los almacenes en memoria.
+ * Cada almacén (por ejemplo "productos") guarda entidades por id como bytes ya codificados;
+ * el registro no conoce su formato. Al arrancar devuelve el último estado de cada almacén.
+ */
+public interface RegistroCambios extends AutoCloseable {
+
+    /**
+     * Indica si no había nada guardado al arrancar; en ese caso los servicios cargan sus datos iniciales.
+     */
+    boolean vacio();
+
+    /**
+     * Devuelve el estado recuperado de un almacén. Solo se puede pedir una vez por almacén,
+     * para no mantener en memoria una segunda copia de los datos.
+     *
+     * @param almacen Nombre del almacén.
+     * @return Las entidades recuperadas y el mayor id que se usó, aunque la entidad ya no exista.
+     */
+    EstadoAlmacen recuperar(String almacen);
+
+    /**
+     * Registra el alta o la modificación de una entidad.
+     *
+     * @return Un futuro que se completa cuando el cambio ya está en el disco.
+     */
+    CompletableFuture<Void> guardar(String almacen, long id, byte[] datos);
+
+    /**
+     * Registra la eliminación de una entidad.
+     *
+     * @return Un futuro que se completa cuando el cambio ya está en el disco.
+     */
+    CompletableFuture<Void> eliminar(String almacen, long id);
+
+    @Override
+    void close();
+
+    /**
+     * Registro que no guarda nada: los datos solo viven en memoria.
+     */
+    static RegistroCambios ninguno() {
+        return SinPersistencia.INSTANCIA;
+    }
+}
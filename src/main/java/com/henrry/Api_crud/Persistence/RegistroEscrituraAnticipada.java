@@ -0,0 +1,570 @@
+package com.henrry.Api_crud.Persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Registro de escritura anticipada (WAL): los cambios se agregan al final de segmentos
+ * mapeados en memoria y un único hilo escritor los sincroniza con el disco en grupo,
+ * es decir, un solo {@code force} confirma todos los cambios que llegaron mientras se
+ * sincronizaba el grupo anterior. Quien registra un cambio nunca se bloquea: recibe un
+ * futuro que se completa cuando el cambio es durable. Los futuros se completan fuera del hilo
+ * escritor, así que lo que el llamador encadena no demora la sincronización del grupo siguiente.
+ * <p>
+ * Cada registro es {@code [largo][crc32c][tipo][almacén][id][datos]}; un largo 0 marca el final
+ * de un segmento y un CRC inválido al final del último segmento es una escritura interrumpida
+ * que se descarta. Cada tantos segmentos, un hilo aparte compacta la instantánea anterior y los
+ * segmentos cerrados en una nueva instantánea con solo el estado vigente, y borra lo que ya
+ * no hace falta. Al arrancar se lee la última instantánea y se reproducen los segmentos posteriores.
+ * <p>
+ * Si una escritura falla, el registro queda fallido: los cambios no sincronizados se informan como
+ * fallidos y se borran del segmento, para que no se reproduzcan al reiniciar, y las escrituras
+ * siguientes se rechazan. Se vuelve a escribir al reiniciar, desde lo que sí quedó en el disco.
+ */
+public class RegistroEscrituraAnticipada implements RegistroCambios {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroEscrituraAnticipada.class);
+
+    private static final byte GUARDAR = 1;
+    private static final byte ELIMINAR = 2;
+    private static final byte ROTAR = 3;
+    private static final int ENCABEZADO = 8; // largo + crc
+    private static final int MAGICO_INSTANTANEA = 0x57414C53; // "WALS"
+    private static final int MAXIMO_LOTE = 4096;
+
+    private final Path directorio;
+    private final int tamanoSegmento;
+    private final int segmentosPorInstantanea;
+    private final Map<String, EstadoAlmacen> recuperado = new ConcurrentHashMap<>();
+    private final boolean vacio;
+    private final ConcurrentLinkedQueue<Operacion> cola = new ConcurrentLinkedQueue<>();
+    private final Thread escritor;
+    private final ScheduledExecutorService compactador;
+    private volatile boolean cerrado;
+    private volatile Throwable fallo;
+
+    // Estado del segmento activo: solo lo usa el hilo escritor
+    private FileChannel canal;
+    private MappedByteBuffer segmento;
+    private int posicion;
+    private int inicioPendiente;
+    private final List<Operacion> pendientes = new ArrayList<>();
+    private int segmentosDesdeInstantanea;
+
+    private volatile long numeroSegmento;
+    private volatile long ultimaInstantanea;
+
+    /**
+     * Abre el registro del directorio y recupera su contenido.
+     *
+     * @param directorio              Directorio de segmentos e instantáneas; se crea si no existe.
+     * @param tamanoSegmento          Tamaño de cada segmento en bytes.
+     * @param segmentosPorInstantanea Segmentos cerrados que disparan una compactación.
+     * @param intervaloInstantanea    Cada cuánto se compacta aunque no se llenen segmentos.
+     */
+    public RegistroEscrituraAnticipada(Path directorio, int tamanoSegmento, int segmentosPorInstantanea,
+                                       Duration intervaloInstantanea) throws IOException {
+        this.directorio = directorio;
+        this.tamanoSegmento = tamanoSegmento;
+        this.segmentosPorInstantanea = segmentosPorInstantanea;
+        Files.createDirectories(directorio);
+
+        long inicio = System.nanoTime();
+        Map<String, Plegado> estado = new HashMap<>();
+        ultimaInstantanea = ultimo(listar("instantanea-", ".snap"), -1);
+        if (ultimaInstantanea >= 0) {
+            leerInstantanea(ultimaInstantanea, estado);
+        }
+        List<Long> segmentos = listar("segmento-", ".wal");
+        int registros = 0;
+        int fin = 0;
+        for (long numero : segmentos) {
+            if (numero < ultimaInstantanea) {
+                Files.deleteIfExists(segmento(numero)); // Ya está incluido en la instantánea
+                continue;
+            }
+            boolean esUltimo = numero == ultimo(segmentos, -1);
+            Lectura lectura = reproducir(numero, estado, esUltimo);
+            registros += lectura.registros();
+            fin = lectura.fin();
+        }
+        this.vacio = ultimaInstantanea < 0 && registros == 0;
+        estado.forEach((almacen, plegado) -> recuperado.put(almacen, new EstadoAlmacen(plegado.entidades, plegado.ultimoId)));
+
+        numeroSegmento = segmentos.isEmpty() || ultimo(segmentos, -1) < ultimaInstantanea
+                ? Math.max(ultimaInstantanea, 0) : ultimo(segmentos, -1);
+        abrir(numeroSegmento, segmentos.contains(numeroSegmento) ? fin : 0);
+        log.info("Registro de cambios recuperado desde {}: {} almacenes, {} registros posteriores a la instantánea, en {} ms",
+                directorio, recuperado.size(), registros, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+
+        segmentosDesdeInstantanea = (int) segmentos.stream().filter(n -> n >= ultimaInstantanea && n < numeroSegmento).count();
+
+        this.compactador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "wal-compactador");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.escritor = new Thread(this::escribir, "wal-escritor");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+        long intervalo = intervaloInstantanea.toMillis();
+        compactador.scheduleWithFixedDelay(this::compactar, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean vacio() {
+        return vacio;
+    }
+
+    @Override
+    public EstadoAlmacen recuperar(String almacen) {
+        EstadoAlmacen estado = recuperado.remove(almacen);
+        return estado != null ? estado : EstadoAlmacen.vacio();
+    }
+
+    @Override
+    public CompletableFuture<Void> guardar(String almacen, long id, byte[] datos) {
+        return encolar(new Operacion(GUARDAR, almacen.getBytes(StandardCharsets.UTF_8), id, datos));
+    }
+
+    @Override
+    public CompletableFuture<Void> eliminar(String almacen, long id) {
+        return encolar(new Operacion(ELIMINAR, almacen.getBytes(StandardCharsets.UTF_8), id, new byte[0]));
+    }
+
+    /**
+     * Cierra el segmento activo y compacta todos los segmentos cerrados en una nueva instantánea.
+     *
+     * @return Un futuro que se completa cuando la instantánea quedó escrita.
+     */
+    public CompletableFuture<Void> compactar() {
+        return encolar(new Operacion(ROTAR, new byte[0], 0, new byte[0]))
+                .thenRunAsync(this::compactarSegmentosCerrados, compactador);
+    }
+
+    private CompletableFuture<Void> encolar(Operacion operacion) {
+        if (cerrado) {
+            return CompletableFuture.failedFuture(new IllegalStateException("El registro de cambios está cerrado"));
+        }
+        if (fallo != null) {
+            return CompletableFuture.failedFuture(rechazo());
+        }
+        cola.add(operacion);
+        LockSupport.unpark(escritor);
+        return operacion.listo;
+    }
+
+    /**
+     * Espera a que se escriban los cambios pendientes y libera los archivos.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactador.shutdownNow();
+        Operacion operacion;
+        while ((operacion = cola.poll()) != null) {
+            operacion.listo.completeExceptionally(new IllegalStateException("El registro de cambios está cerrado"));
+        }
+        try {
+            canal.close();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar el segmento {}", numeroSegmento, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- hilo escritor
+
+    private void escribir() {
+        while (true) {
+            Operacion operacion = cola.poll();
+            if (operacion == null) {
+                if (cerrado) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            if (fallo != null) {
+                // Se encoló justo antes de que el registro fallara
+                notificar(List.of(operacion), rechazo());
+                continue;
+            }
+            try {
+                int lote = 0;
+                do {
+                    if (operacion.tipo == ROTAR) {
+                        rotar();
+                        pendientes.add(operacion);
+                    } else {
+                        agregar(operacion);
+                    }
+                } while (++lote < MAXIMO_LOTE && (operacion = cola.poll()) != null);
+                sincronizar();
+            } catch (IOException | RuntimeException e) {
+                log.error("No se pudieron escribir cambios en el segmento {}; el registro deja de aceptar escrituras",
+                        numeroSegmento, e);
+                fallo = e;
+                descartarPendientes();
+                // La operación en curso puede no estar entre las pendientes (por ejemplo, si falló al rotar)
+                if (operacion != null && !pendientes.contains(operacion)) {
+                    pendientes.add(operacion);
+                }
+                notificar(pendientes, e);
+                pendientes.clear();
+            }
+        }
+    }
+
+    /**
+     * Borra del segmento los registros que no se sincronizaron: se informan como fallidos, así que
+     * no deben reproducirse al reiniciar aunque el sistema operativo llegue a escribirlos.
+     */
+    private void descartarPendientes() {
+        try {
+            if (posicion > inicioPendiente) {
+                segmento.put(inicioPendiente, new byte[posicion - inicioPendiente]);
+                segmento.force(inicioPendiente, posicion - inicioPendiente);
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron borrar los cambios sin sincronizar del segmento {}", numeroSegmento, e);
+        }
+        posicion = inicioPendiente;
+    }
+
+    private IllegalStateException rechazo() {
+        return new IllegalStateException("El registro de cambios falló y no acepta más escrituras", fallo);
+    }
+
+    private void agregar(Operacion operacion) throws IOException {
+        int largo = 1 + 2 + operacion.almacen.length + 8 + operacion.datos.length;
+        if (ENCABEZADO + largo > tamanoSegmento) {
+            notificar(List.of(operacion), new IllegalArgumentException(
+                    "El registro ocupa " + largo + " bytes y no cabe en un segmento de " + tamanoSegmento));
+            return;
+        }
+        if (posicion + ENCABEZADO + largo > tamanoSegmento) {
+            rotar();
+        }
+        int cuerpo = posicion + ENCABEZADO;
+        segmento.put(cuerpo, operacion.tipo);
+        segmento.putShort(cuerpo + 1, (short) operacion.almacen.length);
+        segmento.put(cuerpo + 3, operacion.almacen);
+        segmento.putLong(cuerpo + 3 + operacion.almacen.length, operacion.id);
+        segmento.put(cuerpo + 11 + operacion.almacen.length, operacion.datos);
+        CRC32C crc = new CRC32C();
+        crc.update(segmento.slice(cuerpo, largo));
+        segmento.putInt(posicion + 4, (int) crc.getValue());
+        segmento.putInt(posicion, largo); // El largo se escribe al final: un registro a medias se lee como fin
+        posicion += ENCABEZADO + largo;
+        pendientes.add(operacion);
+    }
+
+    private void sincronizar() {
+        if (posicion > inicioPendiente) {
+            segmento.force(inicioPendiente, posicion - inicioPendiente);
+            inicioPendiente = posicion;
+        }
+        notificar(pendientes, null);
+        pendientes.clear();
+    }
+
+    /**
+     * Completa los futuros del grupo en otro hilo, en una sola tarea. Si el grupo falló se completan
+     * del último al primero: quien deshace un cambio en memoria encuentra primero el más reciente.
+     */
+    private static void notificar(List<Operacion> grupo, Throwable error) {
+        if (grupo.isEmpty()) {
+            return;
+        }
+        List<Operacion> operaciones = new ArrayList<>(grupo);
+        if (error != null) {
+            Collections.reverse(operaciones);
+        }
+        Runnable completar = () -> operaciones.forEach(operacion -> {
+            if (error == null) {
+                operacion.listo.complete(null);
+            } else {
+                operacion.listo.completeExceptionally(error);
+            }
+        });
+        try {
+            Schedulers.parallel().schedule(completar);
+        } catch (RejectedExecutionException e) {
+            // Los schedulers de Reactor ya se apagaron (la aplicación está terminando)
+            completar.run();
+        }
+    }
+
+    private void rotar() throws IOException {
+        sincronizar();
+        if (posicion == 0) {
+            return; // El segmento activo está vacío: no hace falta otro
+        }
+        canal.close();
+        numeroSegmento++;
+        abrir(numeroSegmento, 0);
+        if (++segmentosDesdeInstantanea >= segmentosPorInstantanea) {
+            segmentosDesdeInstantanea = 0;
+            compactador.execute(this::compactarSegmentosCerrados);
+        }
+    }
+
+    private void abrir(long numero, int desde) throws IOException {
+        canal = FileChannel.open(segmento(numero), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmento = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanoSegmento);
+        posicion = desde;
+        inicioPendiente = desde;
+        if (hayRestos(desde)) {
+            // Restos de una escritura interrumpida: se borran para que no parezcan registros
+            // cuando este segmento deje de ser el último
+            segmento.put(desde, new byte[tamanoSegmento - desde]);
+            segmento.force();
+        }
+    }
+
+    private boolean hayRestos(int desde) {
+        int i = desde;
+        for (; i + 8 <= tamanoSegmento; i += 8) {
+            if (segmento.getLong(i) != 0) {
+                return true;
+            }
+        }
+        for (; i < tamanoSegmento; i++) {
+            if (segmento.get(i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------- compactación
+
+    private void compactarSegmentosCerrados() {
+        long hasta = numeroSegmento; // El segmento activo no se incluye
+        long desde = ultimaInstantanea;
+        if (hasta <= desde) {
+            return;
+        }
+        try {
+            Map<String, Plegado> estado = new HashMap<>();
+            if (desde >= 0) {
+                leerInstantanea(desde, estado);
+            }
+            for (long numero : listar("segmento-", ".wal")) {
+                if (numero >= Math.max(desde, 0) && numero < hasta) {
+                    reproducir(numero, estado, false);
+                }
+            }
+            escribirInstantanea(hasta, estado);
+            ultimaInstantanea = hasta;
+            for (long numero : listar("segmento-", ".wal")) {
+                if (numero < hasta) {
+                    Files.deleteIfExists(segmento(numero));
+                }
+            }
+            if (desde >= 0) {
+                Files.deleteIfExists(instantanea(desde));
+            }
+            log.info("Instantánea {} escrita con {} almacenes", hasta, estado.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("No se pudo compactar el registro de cambios hasta el segmento {}", hasta, e);
+        }
+    }
+
+    private void escribirInstantanea(long numero, Map<String, Plegado> estado) throws IOException {
+        Path temporal = directorio.resolve("instantanea-" + String.format("%020d", numero) + ".tmp");
+        try (FileOutputStream archivo = new FileOutputStream(temporal.toFile())) {
+            CheckedOutputStream verificado = new CheckedOutputStream(archivo, new CRC32C());
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(verificado, 1 << 16));
+            salida.writeInt(MAGICO_INSTANTANEA);
+            salida.writeInt(estado.size());
+            for (Map.Entry<String, Plegado> almacen : estado.entrySet()) {
+                byte[] nombre = almacen.getKey().getBytes(StandardCharsets.UTF_8);
+                salida.writeShort(nombre.length);
+                salida.write(nombre);
+                salida.writeLong(almacen.getValue().ultimoId);
+                salida.writeInt(almacen.getValue().entidades.size());
+                for (Map.Entry<Long, byte[]> entidad : almacen.getValue().entidades.entrySet()) {
+                    salida.writeLong(entidad.getKey());
+                    salida.writeInt(entidad.getValue().length);
+                    salida.write(entidad.getValue());
+                }
+            }
+            salida.flush();
+            new DataOutputStream(archivo).writeLong(verificado.getChecksum().getValue());
+            archivo.getChannel().force(true);
+        }
+        Files.move(temporal, instantanea(numero), StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel carpeta = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            carpeta.force(true); // Para que el cambio de nombre también sea durable
+        } catch (IOException e) {
+            log.debug("No se pudo sincronizar el directorio {}", directorio, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- lectura
+
+    private void leerInstantanea(long numero, Map<String, Plegado> estado) throws IOException {
+        try (FileChannel archivo = FileChannel.open(instantanea(numero), StandardOpenOption.READ)) {
+            ByteBuffer datos = archivo.map(FileChannel.MapMode.READ_ONLY, 0, archivo.size());
+            int contenido = datos.limit() - 8;
+            CRC32C crc = new CRC32C();
+            crc.update(datos.slice(0, contenido));
+            if (contenido < 8 || datos.getInt(0) != MAGICO_INSTANTANEA || datos.getLong(contenido) != crc.getValue()) {
+                throw new IllegalStateException("La instantánea " + instantanea(numero) + " está dañada");
+            }
+            datos.position(4);
+            int almacenes = datos.getInt();
+            for (int i = 0; i < almacenes; i++) {
+                String almacen = leerTexto(datos);
+                long ultimoId = datos.getLong();
+                int entidades = datos.getInt();
+                Plegado plegado = estado.computeIfAbsent(almacen, clave -> new Plegado(entidades));
+                plegado.ultimoId = Math.max(plegado.ultimoId, ultimoId);
+                for (int j = 0; j < entidades; j++) {
+                    long id = datos.getLong();
+                    byte[] valor = new byte[datos.getInt()];
+                    datos.get(valor);
+                    plegado.entidades.put(id, valor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica los registros de un segmento sobre el estado. Un registro inválido solo se tolera
+     * en el último segmento (escritura interrumpida); en cualquier otro el segmento está dañado.
+     */
+    private Lectura reproducir(long numero, Map<String, Plegado> estado, boolean esUltimo) throws IOException {
+        try (FileChannel archivo = FileChannel.open(segmento(numero), StandardOpenOption.READ)) {
+            ByteBuffer datos = archivo.map(FileChannel.MapMode.READ_ONLY, 0, archivo.size());
+            int limite = datos.limit();
+            int posicion = 0;
+            int registros = 0;
+            CRC32C crc = new CRC32C();
+            while (posicion + ENCABEZADO <= limite) {
+                int largo = datos.getInt(posicion);
+                if (largo == 0) {
+                    break;
+                }
+                boolean valido = largo > 11 && posicion + ENCABEZADO + largo <= limite;
+                if (valido) {
+                    crc.reset();
+                    crc.update(datos.slice(posicion + ENCABEZADO, largo));
+                    valido = datos.getInt(posicion + 4) == (int) crc.getValue();
+                }
+                if (!valido) {
+                    if (!esUltimo) {
+                        throw new IllegalStateException("El segmento " + segmento(numero) + " está dañado en la posición " + posicion);
+                    }
+                    log.warn("Se descarta una escritura interrumpida al final de {} (posición {})", segmento(numero), posicion);
+                    break;
+                }
+                ByteBuffer registro = datos.slice(posicion + ENCABEZADO, largo);
+                byte tipo = registro.get();
+                Plegado plegado = estado.computeIfAbsent(leerTexto(registro), clave -> new Plegado(0));
+                long id = registro.getLong();
+                plegado.ultimoId = Math.max(plegado.ultimoId, id);
+                if (tipo == GUARDAR) {
+                    byte[] valor = new byte[registro.remaining()];
+                    registro.get(valor);
+                    plegado.entidades.put(id, valor);
+                } else {
+                    plegado.entidades.remove(id);
+                }
+                posicion += ENCABEZADO + largo;
+                registros++;
+            }
+            return new Lectura(registros, posicion);
+        }
+    }
+
+    private static String leerTexto(ByteBuffer datos) {
+        byte[] texto = new byte[datos.getShort()];
+        datos.get(texto);
+        return new String(texto, StandardCharsets.UTF_8);
+    }
+
+    private List<Long> listar(String prefijo, String sufijo) throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.map(archivo -> archivo.getFileName().toString())
+                    .filter(nombre -> nombre.startsWith(prefijo) && nombre.endsWith(sufijo))
+                    .map(nombre -> Long.parseLong(nombre.substring(prefijo.length(), nombre.length() - sufijo.length())))
+                    .sorted()
+                    .toList();
+        } catch (NumberFormatException e) {
+            throw new UncheckedIOException(new IOException("Nombre de archivo inesperado en " + directorio, e));
+        }
+    }
+
+    private static long ultimo(List<Long> numeros, long siNoHay) {
+        return numeros.isEmpty() ? siNoHay : numeros.get(numeros.size() - 1);
+    }
+
+    private Path segmento(long numero) {
+        return directorio.resolve("segmento-" + String.format("%020d", numero) + ".wal");
+    }
+
+    private Path instantanea(long numero) {
+        return directorio.resolve("instantanea-" + String.format("%020d", numero) + ".snap");
+    }
+
+    private record Operacion(byte tipo, byte[] almacen, long id, byte[] datos, CompletableFuture<Void> listo) {
+        Operacion(byte tipo, byte[] almacen, long id, byte[] datos) {
+            this(tipo, almacen, id, datos, new CompletableFuture<>());
+        }
+    }
+
+    private record Lectura(int registros, int fin) {
+    }
+
+    /**
+     * Estado de un almacén mientras se reproducen instantáneas y segmentos.
+     */
+    private static final class Plegado {
+        private final Map<Long, byte[]> entidades;
+        private long ultimoId;
+
+        private Plegado(int capacidad) {
+            this.entidades = new HashMap<>((int) (capacidad / 0.75f) + 1);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.henrry.Api_crud.Persistence;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcTransientException;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Registro de cambios en una base de datos relacional a través de R2DBC, sin bloquear ningún hilo.
+ * Las entidades se guardan en la tabla {@code entidades}, con clave primaria (almacén, id), y el
+ * mayor id usado por cada almacén en {@code secuencias}.
+ * <p>
+ * Los cambios se encolan y se escriben por lotes: mientras un lote está en curso se acumulan los
+ * siguientes, y cada lote se escribe en una sola transacción con sentencias por lotes (un
+ * {@code DELETE} y un {@code INSERT} con todas las filas). Solo hay un lote en curso a la vez, así
+ * que los cambios de un mismo id llegan a la base en el mismo orden en que se registraron; dentro
+ * de un lote solo se escribe el último cambio de cada id.
+ * <p>
+ * Si un lote falla por un error transitorio ({@link R2dbcTransientException}: conexión caída, tiempo
+ * agotado, bloqueo), se reintenta con esperas crecientes hasta que la base responda; mientras tanto
+ * sigue siendo el primero y los cambios siguientes esperan detrás, así que no se pierde ni se
+ * reordena nada. Reintentar es seguro porque cada lote reemplaza las filas (DELETE e INSERT) en
+ * una transacción. Solo se abandona al cerrar, si la base no se recuperó a tiempo.
+ * <p>
+ * Cualquier otro error (una restricción, un valor que no cabe) fallaría igual en cada intento: el
+ * lote se vuelve a escribir cambio por cambio, para que solo fallen los cambios que lo provocan y
+ * no bloqueen a los demás.
+ * <p>
+ * Al arrancar se crean las tablas si no existen y se lee su contenido; es el único momento en
+ * que se espera a la base.
+ */
+public class RegistroR2dbc implements RegistroCambios {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroR2dbc.class);
+
+    private static final Duration REINTENTO_MINIMO = Duration.ofMillis(100);
+    private static final Duration REINTENTO_MAXIMO = Duration.ofSeconds(10);
+
+    private static final List<String> ESQUEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS entidades (almacen VARCHAR(64) NOT NULL, id BIGINT NOT NULL, "
+                    + "datos VARBINARY NOT NULL, PRIMARY KEY (almacen, id))",
+            "CREATE TABLE IF NOT EXISTS secuencias (almacen VARCHAR(64) NOT NULL PRIMARY KEY, ultimo_id BIGINT NOT NULL)");
+
+    private final ConnectionFactory conexiones;
+    private final int maximoLote;
+    private final Map<String, EstadoAlmacen> recuperado = new ConcurrentHashMap<>();
+    private final boolean vacio;
+    private final ConcurrentLinkedQueue<Operacion> cola = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean escribiendo = new AtomicBoolean();
+    private volatile boolean cerrado;
+    private volatile boolean abandonado;
+
+    // Mayor id ya escrito en secuencias por almacén: solo lo usa el lote en curso
+    private final Map<String, Long> ultimosIds = new HashMap<>();
+
+    /**
+     * Crea las tablas si hace falta y recupera su contenido.
+     *
+     * @param conexiones Fábrica de conexiones, normalmente un pool.
+     * @param maximoLote Cambios que se escriben como máximo en una transacción.
+     * @param espera     Tiempo máximo de espera al recuperar los datos.
+     */
+    public RegistroR2dbc(ConnectionFactory conexiones, int maximoLote, Duration espera) {
+        this.conexiones = conexiones;
+        this.maximoLote = maximoLote;
+
+        long inicio = System.nanoTime();
+        Map<String, Plegado> estado = new HashMap<>();
+        conConexion(conexion -> Flux.fromIterable(ESQUEMA)
+                .concatMap(sql -> filas(conexion.createStatement(sql)))
+                .thenMany(Flux.from(conexion.createStatement("SELECT almacen, ultimo_id FROM secuencias").execute())
+                        .flatMap(resultado -> resultado.map((fila, meta) -> {
+                            plegado(estado, fila.get("almacen", String.class)).ultimoId = fila.get("ultimo_id", Long.class);
+                            return Boolean.TRUE;
+                        })))
+                .thenMany(Flux.from(conexion.createStatement("SELECT almacen, id, datos FROM entidades").execute())
+                        .flatMap(resultado -> resultado.map((fila, meta) -> {
+                            Plegado plegado = plegado(estado, fila.get("almacen", String.class));
+                            long id = fila.get("id", Long.class);
+                            plegado.entidades.put(id, fila.get("datos", byte[].class));
+                            plegado.ultimoId = Math.max(plegado.ultimoId, id);
+                            return Boolean.TRUE;
+                        })))
+                .then())
+                .block(espera);
+
+        this.vacio = estado.isEmpty();
+        estado.forEach((almacen, plegado) -> {
+            recuperado.put(almacen, new EstadoAlmacen(plegado.entidades, plegado.ultimoId));
+            ultimosIds.put(almacen, plegado.ultimoId);
+        });
+        log.info("Registro de cambios recuperado de la base de datos: {} almacenes en {} ms",
+                recuperado.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    @Override
+    public boolean vacio() {
+        return vacio;
+    }
+
+    @Override
+    public EstadoAlmacen recuperar(String almacen) {
+        EstadoAlmacen estado = recuperado.remove(almacen);
+        return estado != null ? estado : EstadoAlmacen.vacio();
+    }
+
+    @Override
+    public CompletableFuture<Void> guardar(String almacen, long id, byte[] datos) {
+        return encolar(new Operacion(almacen, id, datos));
+    }
+
+    @Override
+    public CompletableFuture<Void> eliminar(String almacen, long id) {
+        return encolar(new Operacion(almacen, id, null));
+    }
+
+    /**
+     * Deja de aceptar cambios y espera a que se escriban los pendientes.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<Void> ultimo = encolar(new Operacion(null, 0, null));
+        cerrado = true;
+        try {
+            ultimo.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            abandonado = true; // El lote que se está reintentando falla en el próximo intento
+            log.warn("No se pudieron escribir todos los cambios pendientes antes de cerrar", e);
+        }
+    }
+
+    private CompletableFuture<Void> encolar(Operacion operacion) {
+        if (cerrado) {
+            return CompletableFuture.failedFuture(new IllegalStateException("El registro de cambios está cerrado"));
+        }
+        cola.add(operacion);
+        programar();
+        return operacion.listo;
+    }
+
+    /**
+     * Inicia un lote si hay cambios y ninguno en curso. Quien registra un cambio suele estar dentro
+     * de un compute del mapa del servicio, así que el lote se arma y se envía en otro hilo.
+     */
+    private void programar() {
+        if (cola.isEmpty() || !escribiendo.compareAndSet(false, true)) {
+            return;
+        }
+        List<Operacion> lote = new ArrayList<>();
+        Mono.defer(() -> {
+                    Operacion operacion;
+                    while (lote.size() < maximoLote && (operacion = cola.poll()) != null) {
+                        lote.add(operacion);
+                    }
+                    return escribirConReintentos(lote)
+                            .onErrorResume(error -> !(error instanceof R2dbcTransientException) && lote.size() > 1,
+                                    error -> escribirUnoPorUno(lote));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(senal -> {
+                    escribiendo.set(false);
+                    programar(); // Cambios que llegaron mientras se escribía este lote
+                })
+                .subscribe(null, error -> {
+                    log.error("No se pudo escribir un lote de {} cambios en la base de datos", lote.size(), error);
+                    lote.forEach(operacion -> operacion.listo.completeExceptionally(error));
+                }, () -> lote.forEach(operacion -> operacion.listo.complete(null)));
+    }
+
+    private Mono<Void> escribirConReintentos(List<Operacion> lote) {
+        // Cada intento arma el lote y pide la conexión de nuevo
+        return Mono.defer(() -> escribirLote(lote))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, REINTENTO_MINIMO)
+                        .maxBackoff(REINTENTO_MAXIMO)
+                        .filter(error -> error instanceof R2dbcTransientException && !abandonado)
+                        .doBeforeRetry(reintento -> log.warn("No se pudo escribir un lote de {} cambios en la base de datos; intento {}",
+                                lote.size(), reintento.totalRetries() + 1, reintento.failure())));
+    }
+
+    /**
+     * Escribe cada cambio del lote en su propia transacción, en orden, y completa su futuro.
+     */
+    private Mono<Void> escribirUnoPorUno(List<Operacion> lote) {
+        return Flux.fromIterable(lote)
+                .concatMap(operacion -> escribirConReintentos(List.of(operacion))
+                        .doOnSuccess(listo -> operacion.listo.complete(null))
+                        .onErrorResume(error -> {
+                            log.error("No se pudo escribir el cambio {} de {} en la base de datos", operacion.id, operacion.almacen, error);
+                            operacion.listo.completeExceptionally(error);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Void> escribirLote(List<Operacion> lote) {
+        Map<Clave, Operacion> ultimos = new LinkedHashMap<>();
+        Map<String, Long> secuencias = new HashMap<>();
+        for (Operacion operacion : lote) {
+            if (operacion.almacen == null) {
+                continue; // Marca de cierre: solo espera a los cambios anteriores
+            }
+            ultimos.put(new Clave(operacion.almacen, operacion.id), operacion);
+            if (operacion.id > ultimosIds.getOrDefault(operacion.almacen, 0L)) {
+                secuencias.merge(operacion.almacen, operacion.id, Math::max);
+            }
+        }
+        if (ultimos.isEmpty()) {
+            return Mono.empty();
+        }
+        return conConexion(conexion -> {
+            Statement eliminar = conexion.createStatement("DELETE FROM entidades WHERE almacen = $1 AND id = $2");
+            Statement insertar = conexion.createStatement("INSERT INTO entidades (almacen, id, datos) VALUES ($1, $2, $3)");
+            boolean hayInserciones = false;
+            boolean primera = true;
+            for (Operacion operacion : ultimos.values()) {
+                if (!primera) {
+                    eliminar.add();
+                }
+                eliminar.bind(0, operacion.almacen).bind(1, operacion.id);
+                primera = false;
+                if (operacion.datos != null) {
+                    if (hayInserciones) {
+                        insertar.add();
+                    }
+                    insertar.bind(0, operacion.almacen).bind(1, operacion.id).bind(2, operacion.datos);
+                    hayInserciones = true;
+                }
+            }
+            Flux<Long> cambios = filas(eliminar);
+            if (hayInserciones) {
+                cambios = cambios.concatWith(filas(insertar));
+            }
+            for (Map.Entry<String, Long> secuencia : secuencias.entrySet()) {
+                cambios = cambios.concatWith(filas(ultimosIds.containsKey(secuencia.getKey())
+                        ? conexion.createStatement("UPDATE secuencias SET ultimo_id = $1 WHERE almacen = $2")
+                        .bind(0, secuencia.getValue()).bind(1, secuencia.getKey())
+                        : conexion.createStatement("INSERT INTO secuencias (almacen, ultimo_id) VALUES ($1, $2)")
+                        .bind(0, secuencia.getKey()).bind(1, secuencia.getValue())));
+            }
+            return Mono.from(conexion.beginTransaction())
+                    .thenMany(cambios)
+                    .then(Mono.from(conexion.commitTransaction()))
+                    .onErrorResume(error -> Mono.from(conexion.rollbackTransaction()).then(Mono.error(error)));
+        }).doOnSuccess(listo -> ultimosIds.putAll(secuencias));
+    }
+
+    private <T> Mono<T> conConexion(Function<Connection, Mono<T>> uso) {
+        return Mono.usingWhen(conexiones.create(), uso, Connection::close);
+    }
+
+    /**
+     * Ejecuta la sentencia al suscribirse, no al armar la cadena, para que quede dentro de la transacción.
+     */
+    private static Flux<Long> filas(Statement sentencia) {
+        return Flux.defer(sentencia::execute).flatMap(Result::getRowsUpdated);
+    }
+
+    private static Plegado plegado(Map<String, Plegado> estado, String almacen) {
+        return estado.computeIfAbsent(almacen, clave -> new Plegado());
+    }
+
+    private record Clave(String almacen, long id) {
+    }
+
+    private static final class Plegado {
+        private final Map<Long, byte[]> entidades = new HashMap<>();
+        private long ultimoId;
+    }
+
+    /**
+     * Un cambio pendiente; sin datos es una eliminación y sin almacén, la marca de cierre.
+     */
+    private static final class Operacion {
+        private final String almacen;
+        private final long id;
+        private final byte[] datos;
+        private final CompletableFuture<Void> listo = new CompletableFuture<>();
+
+        private Operacion(String almacen, long id, byte[] datos) {
+            this.almacen = almacen;
+            this.id = id;
+            this.datos = datos;
+        }
+    }
+}
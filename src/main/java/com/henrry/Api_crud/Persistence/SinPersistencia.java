@@ -0,0 +1,40 @@
+package com.henrry.Api_crud.Persistence;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementación de {@link RegistroCambios} que no guarda nada.
+ */
+final class SinPersistencia implements RegistroCambios {
+
+    static final SinPersistencia INSTANCIA = new SinPersistencia();
+
+    private static final CompletableFuture<Void> LISTO = CompletableFuture.completedFuture(null);
+
+    private SinPersistencia() {
+    }
+
+    @Override
+    public boolean vacio() {
+        return true;
+    }
+
+    @Override
+    public EstadoAlmacen recuperar(String almacen) {
+        return EstadoAlmacen.vacio();
+    }
+
+    @Override
+    public CompletableFuture<Void> guardar(String almacen, long id, byte[] datos) {
+        return LISTO;
+    }
+
+    @Override
+    public CompletableFuture<Void> eliminar(String almacen, long id) {
+        return LISTO;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,151 @@
+package com.henrry.Api_crud.Service;
+
+import com.henrry.Api_crud.Models.Pedido;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totales de pedidos que se mantienen al día con cada alta, actualización y baja, para que
+ * las estadísticas no tengan que recorrer los pedidos: el total es O(1) y el top-N es
+ * O(G log N) sobre el número de grupos G.
+ * <p>
+ * El importe se acumula en euros (el precio total de cada pedido), así que un cambio de tasas no lo
+ * invalida; se convierte a la moneda del idioma al consultar. Los pedidos se guardan una sola vez,
+ * pero el cliente y el producto pueden estar traducidos, así que los grupos se llevan por idioma,
+ * con el nombre que se ve en ese idioma. Los grupos se crean y se quitan dentro de compute, como
+ * los índices del repositorio, para que un grupo vacío no se elimine mientras otro hilo le suma un pedido.
+ */
+final class AcumuladosPedidos {
+
+    private final Acumulado total = new Acumulado();
+    private final Map<String, ConcurrentMap<String, Acumulado>> porCliente = new HashMap<>();
+    private final Map<String, ConcurrentMap<String, Acumulado>> porProducto = new HashMap<>();
+
+    AcumuladosPedidos() {
+        for (String idioma : Traducciones.IDIOMAS) {
+            porCliente.put(idioma, new ConcurrentHashMap<>());
+            porProducto.put(idioma, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Suma un pedido canónico (precio en euros) con sus traducciones.
+     */
+    void sumar(Pedido pedido, List<Traducciones.Traduccion> traducciones) {
+        aplicar(pedido, traducciones, 1);
+    }
+
+    void restar(Pedido pedido, List<Traducciones.Traduccion> traducciones) {
+        aplicar(pedido, traducciones, -1);
+    }
+
+    Suma total() {
+        return total.suma(null);
+    }
+
+    /**
+     * Sumas de un cliente según su nombre en el idioma, o null si no tiene pedidos.
+     */
+    Suma cliente(String idioma, String cliente) {
+        Acumulado acumulado = porCliente.get(idioma).get(cliente);
+        return acumulado != null ? acumulado.suma(cliente) : null;
+    }
+
+    /**
+     * Sumas de un producto según su nombre en el idioma, o null si no tiene pedidos.
+     */
+    Suma producto(String idioma, String producto) {
+        Acumulado acumulado = porProducto.get(idioma).get(producto);
+        return acumulado != null ? acumulado.suma(producto) : null;
+    }
+
+    List<Suma> mayoresClientes(String idioma, int limite) {
+        return mayores(porCliente.get(idioma), limite);
+    }
+
+    List<Suma> mayoresProductos(String idioma, int limite) {
+        return mayores(porProducto.get(idioma), limite);
+    }
+
+    private void aplicar(Pedido pedido, List<Traducciones.Traduccion> traducciones, int signo) {
+        long unidades = (long) signo * pedido.getCantidad();
+        double importe = signo * pedido.getPrecioTotal();
+        total.agregar(signo, unidades, importe);
+        for (String idioma : Traducciones.IDIOMAS) {
+            agregar(porCliente.get(idioma), Traducciones.texto(traducciones, PedidoService.CLIENTE, idioma, pedido.getCliente()),
+                    signo, unidades, importe);
+            agregar(porProducto.get(idioma), Traducciones.texto(traducciones, PedidoService.PRODUCTO, idioma, pedido.getProducto()),
+                    signo, unidades, importe);
+        }
+    }
+
+    private static void agregar(ConcurrentMap<String, Acumulado> grupos, String nombre, int pedidos, long unidades, double importe) {
+        if (nombre == null) {
+            return;
+        }
+        grupos.compute(nombre, (clave, acumulado) -> {
+            Acumulado grupo = acumulado != null ? acumulado : new Acumulado();
+            grupo.agregar(pedidos, unidades, importe);
+            return grupo.pedidos() == 0 ? null : grupo;
+        });
+    }
+
+    /**
+     * Los grupos con mayor importe, de mayor a menor, con un montículo de tamaño acotado.
+     */
+    private static List<Suma> mayores(ConcurrentMap<String, Acumulado> grupos, int limite) {
+        Comparator<Suma> porImporte = Comparator.comparingDouble(Suma::importeBase);
+        PriorityQueue<Suma> mayores = new PriorityQueue<>(porImporte);
+        grupos.forEach((nombre, acumulado) -> {
+            mayores.add(acumulado.suma(nombre));
+            if (mayores.size() > limite) {
+                mayores.poll();
+            }
+        });
+        List<Suma> resultado = new ArrayList<>(mayores);
+        resultado.sort(porImporte.reversed());
+        return resultado;
+    }
+
+    /**
+     * Sumas leídas de un grupo en un momento dado.
+     *
+     * @param nombre      Cliente o producto, o null para el total.
+     * @param importeBase Importe en euros.
+     */
+    record Suma(String nombre, long pedidos, long unidades, double importeBase) {
+    }
+
+    /**
+     * Sumas de un grupo. Cada valor se lee por separado, así que con escrituras en curso una
+     * lectura puede mezclar un pedido ya sumado en un total y aún no en otro.
+     */
+    private static final class Acumulado {
+        private final LongAdder pedidos = new LongAdder();
+        private final LongAdder unidades = new LongAdder();
+        private final DoubleAdder importe = new DoubleAdder();
+
+        private void agregar(int pedidos, long unidades, double importe) {
+            this.pedidos.add(pedidos);
+            this.unidades.add(unidades);
+            this.importe.add(importe);
+        }
+
+        private long pedidos() {
+            return pedidos.sum();
+        }
+
+        private Suma suma(String nombre) {
+            return new Suma(nombre, pedidos.sum(), unidades.sum(), importe.sum());
+        }
+    }
+}
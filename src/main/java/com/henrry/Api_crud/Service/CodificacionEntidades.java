@@ -0,0 +1,148 @@
+package com.henrry.Api_crud.Service;
+
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Service.Traducciones.Traduccion;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato binario con el que los servicios guardan sus entidades en el registro de cambios.
+ * El id no se incluye porque el registro ya lo guarda junto a cada entidad.
+ * Los textos nulos se codifican con largo -1.
+ * Los campos nuevos se agregan al final: lo guardado antes de que existieran se lee con versión 0
+ * y, en los pedidos, sin producto del catálogo. Al final van las traducciones de la entidad, así
+ * que la entidad y sus textos en cada idioma se guardan y se recuperan juntos.
+ */
+final class CodificacionEntidades {
+
+    private CodificacionEntidades() {
+    }
+
+    static byte[] producto(Producto producto, List<Traduccion> traducciones) {
+        byte[] nombre = texto(producto.getNombre());
+        ByteBuffer datos = ByteBuffer.allocate(largo(nombre) + 1 + 8 + 8 + largo(traducciones));
+        escribir(datos, nombre);
+        datos.put((byte) (producto.getPrecio() != null ? 1 : 0));
+        datos.putDouble(producto.getPrecio() != null ? producto.getPrecio() : 0);
+        datos.putLong(producto.getVersion());
+        escribir(datos, traducciones);
+        return datos.array();
+    }
+
+    static Guardado<Producto> producto(long id, byte[] bytes) {
+        ByteBuffer datos = ByteBuffer.wrap(bytes);
+        String nombre = leer(datos);
+        boolean tienePrecio = datos.get() == 1;
+        double precio = datos.getDouble();
+        Producto producto = new Producto(id, nombre, tienePrecio ? precio : null, version(datos));
+        return new Guardado<>(producto, traducciones(datos));
+    }
+
+    /**
+     * El pedido canónico ya tiene el precio en euros, que es lo que se guarda; se convierte a la
+     * moneda de cada idioma con las tasas vigentes al leerlo.
+     */
+    static byte[] pedido(Pedido pedido, List<Traduccion> traducciones) {
+        byte[] cliente = texto(pedido.getCliente());
+        byte[] producto = texto(pedido.getProducto());
+        byte[] precio = texto(BigDecimal.valueOf(pedido.getPrecioTotal()).toPlainString());
+        ByteBuffer datos = ByteBuffer.allocate(largo(cliente) + largo(producto) + 4 + largo(precio) + 8 + 1 + 8
+                + largo(traducciones));
+        escribir(datos, cliente);
+        escribir(datos, producto);
+        datos.putInt(pedido.getCantidad());
+        escribir(datos, precio);
+        datos.putLong(pedido.getVersion());
+        datos.put((byte) (pedido.getProductoId() != null ? 1 : 0));
+        datos.putLong(pedido.getProductoId() != null ? pedido.getProductoId() : 0);
+        escribir(datos, traducciones);
+        return datos.array();
+    }
+
+    /**
+     * Devuelve el pedido canónico, con el precio total en euros.
+     */
+    static Guardado<Pedido> pedido(long id, byte[] bytes) {
+        ByteBuffer datos = ByteBuffer.wrap(bytes);
+        Pedido pedido = new Pedido(id, leer(datos), leer(datos), datos.getInt(), 0);
+        pedido.setPrecioTotal(new BigDecimal(leer(datos)).doubleValue());
+        pedido.setVersion(version(datos));
+        if (datos.remaining() >= 9 && datos.get() == 1) {
+            pedido.setProductoId(datos.getLong());
+        } else if (datos.remaining() >= 8) {
+            datos.getLong();
+        }
+        return new Guardado<>(pedido, traducciones(datos));
+    }
+
+    /**
+     * Una entidad canónica con sus traducciones, tal como se guarda en el registro.
+     */
+    record Guardado<T>(T entidad, List<Traduccion> traducciones) {
+    }
+
+    private static int largo(List<Traduccion> traducciones) {
+        int largo = 4;
+        for (Traduccion traduccion : traducciones) {
+            largo += largo(texto(traduccion.campo())) + largo(texto(traduccion.idioma())) + largo(texto(traduccion.texto()));
+        }
+        return largo;
+    }
+
+    private static void escribir(ByteBuffer datos, List<Traduccion> traducciones) {
+        datos.putInt(traducciones.size());
+        for (Traduccion traduccion : traducciones) {
+            escribir(datos, texto(traduccion.campo()));
+            escribir(datos, texto(traduccion.idioma()));
+            escribir(datos, texto(traduccion.texto()));
+        }
+    }
+
+    private static List<Traduccion> traducciones(ByteBuffer datos) {
+        if (datos.remaining() < 4) {
+            return List.of();
+        }
+        int cantidad = datos.getInt();
+        List<Traduccion> traducciones = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            traducciones.add(new Traduccion(leer(datos), leer(datos), leer(datos)));
+        }
+        return traducciones;
+    }
+
+    private static long version(ByteBuffer datos) {
+        return datos.remaining() >= 8 ? datos.getLong() : 0;
+    }
+
+    private static byte[] texto(String valor) {
+        return valor != null ? valor.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int largo(byte[] texto) {
+        return 4 + (texto != null ? texto.length : 0);
+    }
+
+    private static void escribir(ByteBuffer datos, byte[] texto) {
+        if (texto == null) {
+            datos.putInt(-1);
+        } else {
+            datos.putInt(texto.length);
+            datos.put(texto);
+        }
+    }
+
+    private static String leer(ByteBuffer datos) {
+        int largo = datos.getInt();
+        if (largo < 0) {
+            return null;
+        }
+        String valor = new String(datos.array(), datos.position(), largo, StandardCharsets.UTF_8);
+        datos.position(datos.position() + largo);
+        return valor;
+    }
+}
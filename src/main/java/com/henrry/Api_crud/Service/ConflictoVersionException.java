@@ -0,0 +1,19 @@
+package com.henrry.Api_crud.Service;
+
+/**
+ * Se lanza cuando una actualización condicionada a una versión encuentra otra versión guardada,
+ * es decir, alguien más modificó la entidad desde que el cliente la leyó.
+ */
+public class ConflictoVersionException extends RuntimeException {
+
+    private final long versionActual;
+
+    public ConflictoVersionException(long versionEsperada, long versionActual) {
+        super("Se esperaba la versión " + versionEsperada + " pero la actual es " + versionActual);
+        this.versionActual = versionActual;
+    }
+
+    public long getVersionActual() {
+        return versionActual;
+    }
+}
@@ -0,0 +1,128 @@
+package com.henrry.Api_crud.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Servicio de conversión de precios según el idioma del cliente.
+ * Las tasas se leen de un archivo de propiedades (idioma=tasa respecto al euro) y se guardan
+ * en una tabla inmutable que se reemplaza de forma atómica. Si el archivo está en el disco,
+ * se recarga cuando cambia, sin reiniciar la aplicación.
+ */
+@Service
+public class ConversionMonedaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversionMonedaService.class);
+
+    private final Resource archivo;
+    private final ApplicationEventPublisher eventos;
+    private final AtomicReference<TasasCambio> tasas = new AtomicReference<>();
+    private volatile long ultimaModificacion;
+
+    public ConversionMonedaService(@Value("${moneda.tasas.archivo:classpath:tasas-cambio.properties}") Resource archivo,
+                                   ApplicationEventPublisher eventos) {
+        this.archivo = archivo;
+        this.eventos = eventos;
+        this.ultimaModificacion = ultimaModificacion();
+        this.tasas.set(leer());
+    }
+
+    /**
+     * Tabla de tasas vigente.
+     */
+    public TasasCambio tasas() {
+        return tasas.get();
+    }
+
+    /**
+     * Método para calcular el precio de un pedido según el idioma.
+     *
+     * @param precioBase El precio en euros.
+     * @param locale     El idioma en el que se desea calcular el precio; solo cuenta el idioma, no la región.
+     * @return El precio convertido y redondeado al céntimo.
+     */
+    public double calcularPrecioPorIdioma(BigDecimal precioBase, Locale locale) {
+        return tasas.get().convertir(precioBase, locale.getLanguage()).doubleValue();
+    }
+
+    /**
+     * Convierte un precio expresado en la moneda del idioma a euros.
+     */
+    public BigDecimal precioBase(double precio, Locale locale) {
+        return tasas.get().aEuros(BigDecimal.valueOf(precio), locale.getLanguage());
+    }
+
+    /**
+     * Revisa periódicamente si el archivo de tasas cambió y, en ese caso, lo vuelve a cargar.
+     */
+    @Scheduled(fixedDelayString = "${moneda.tasas.intervalo-recarga-ms:30000}")
+    public void recargarSiCambio() {
+        long modificacion = ultimaModificacion();
+        if (modificacion != ultimaModificacion) {
+            ultimaModificacion = modificacion;
+            recargar();
+        }
+    }
+
+    /**
+     * Vuelve a leer el archivo de tasas. Si las tasas cambiaron publica {@link TasasCambioActualizadas}.
+     * Si el archivo es inválido se conservan las tasas anteriores.
+     */
+    public void recargar() {
+        TasasCambio nuevas;
+        try {
+            nuevas = leer();
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron recargar las tasas de cambio desde {}; se mantienen las anteriores", archivo, e);
+            return;
+        }
+        TasasCambio anteriores = tasas.getAndSet(nuevas);
+        if (!nuevas.equals(anteriores)) {
+            log.info("Tasas de cambio actualizadas: {}", nuevas);
+            eventos.publishEvent(new TasasCambioActualizadas(nuevas));
+        }
+    }
+
+    private TasasCambio leer() {
+        Properties propiedades = new Properties();
+        try (InputStream entrada = archivo.getInputStream()) {
+            propiedades.load(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el archivo de tasas " + archivo, e);
+        }
+        Map<String, BigDecimal> tasasPorIdioma = new HashMap<>();
+        for (String idioma : propiedades.stringPropertyNames()) {
+            BigDecimal tasa = new BigDecimal(propiedades.getProperty(idioma).trim());
+            if (tasa.signum() <= 0) {
+                throw new IllegalArgumentException("La tasa de '" + idioma + "' debe ser positiva: " + tasa);
+            }
+            tasasPorIdioma.put(idioma.toLowerCase(Locale.ROOT), tasa);
+        }
+        return new TasasCambio(tasasPorIdioma);
+    }
+
+    private long ultimaModificacion() {
+        try {
+            return archivo.isFile() ? archivo.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.henrry.Api_crud.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido de los nombres de un catálogo, en todos los idiomas: cada palabra apunta a los
+ * ids (ordenados) de los productos que la contienen en alguno de sus nombres. Las palabras se guardan sin acentos y en minúsculas, así que
+ * "tele" encuentra "Téléviseur Samsung".
+ * <p>
+ * El diccionario de palabras es un mapa ordenado, que hace de árbol de prefijos: las palabras que
+ * empiezan por un prefijo son un rango contiguo del mapa. Cada palabra lleva además cuántos ids
+ * tiene, para empezar una búsqueda por la lista más corta sin contar los conjuntos.
+ * <p>
+ * Un prefijo corto puede abarcar muchísimas palabras (con un millón de productos, "1" abarca más de
+ * cien mil), y unirlas cuesta un iterador por palabra antes de emitir el primer id. Por eso cada
+ * producto también está en la lista de la inicial de cada palabra: un prefijo de un carácter, o uno
+ * que abarca más de {@value #MAXIMO_PALABRAS_PREFIJO} palabras, recorre esa sola lista.
+ * <p>
+ * Las palabras se agregan y se quitan dentro de compute, como los índices de pedidos, para que
+ * una palabra sin productos no se elimine mientras otro hilo le agrega uno.
+ */
+final class IndiceProductos {
+
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    static final int MAXIMO_PALABRAS_PREFIJO = 256;
+
+    private final ConcurrentSkipListMap<String, Apariciones> palabras = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Apariciones> iniciales = new ConcurrentSkipListMap<>();
+
+    /**
+     * Agrega el producto a las palabras de todos sus nombres (el canónico y sus traducciones).
+     */
+    void agregar(long id, Collection<String> nombres) {
+        Set<String> palabrasProducto = palabras(nombres);
+        for (String palabra : palabrasProducto) {
+            agregar(palabras, palabra, id);
+        }
+        for (String inicial : iniciales(palabrasProducto)) {
+            agregar(iniciales, inicial, id);
+        }
+    }
+
+    void quitar(long id, Collection<String> nombres) {
+        Set<String> palabrasProducto = palabras(nombres);
+        for (String palabra : palabrasProducto) {
+            quitar(palabras, palabra, id);
+        }
+        for (String inicial : iniciales(palabrasProducto)) {
+            quitar(iniciales, inicial, id);
+        }
+    }
+
+    private static void agregar(ConcurrentSkipListMap<String, Apariciones> indice, String clave, long id) {
+        indice.compute(clave, (c, apariciones) -> {
+            Apariciones resultado = apariciones != null ? apariciones : new Apariciones();
+            if (resultado.ids.add(id)) {
+                resultado.tamano.incrementAndGet();
+            }
+            return resultado;
+        });
+    }
+
+    private static void quitar(ConcurrentSkipListMap<String, Apariciones> indice, String clave, long id) {
+        indice.computeIfPresent(clave, (c, apariciones) -> {
+            if (apariciones.ids.remove(id)) {
+                apariciones.tamano.decrementAndGet();
+            }
+            return apariciones.ids.isEmpty() ? null : apariciones;
+        });
+    }
+
+    /**
+     * Ids candidatos para la consulta, en orden ascendente y mayores que el cursor. Se recorre la
+     * lista más corta entre la de cada palabra completa y la unión de las palabras con el prefijo;
+     * quien los usa debe confirmar cada candidato con {@link Consulta#coincide(String)}.
+     */
+    Iterable<Long> candidatos(Consulta consulta, Long cursor) {
+        NavigableSet<Long> menor = null;
+        int tamanoMenor = Integer.MAX_VALUE;
+        for (String palabra : consulta.completas()) {
+            Apariciones apariciones = palabras.get(palabra);
+            if (apariciones == null) {
+                return Collections.emptyList();
+            }
+            if (apariciones.tamano.get() < tamanoMenor) {
+                menor = apariciones.ids;
+                tamanoMenor = apariciones.tamano.get();
+            }
+        }
+        String prefijo = consulta.prefijo();
+        if (prefijo.equals(inicial(prefijo))) {
+            return porInicial(prefijo, menor, tamanoMenor, cursor);
+        }
+        Collection<Apariciones> conPrefijo = palabras
+                .subMap(prefijo, true, prefijo + Character.MAX_VALUE, false)
+                .values();
+        // Se suma solo hasta superar la lista más corta o el máximo de palabras
+        long tamanoPrefijo = 0;
+        List<NavigableSet<Long>> listas = new ArrayList<>();
+        Iterator<Apariciones> it = conPrefijo.iterator();
+        while (it.hasNext() && tamanoPrefijo < tamanoMenor && listas.size() < MAXIMO_PALABRAS_PREFIJO) {
+            Apariciones apariciones = it.next();
+            tamanoPrefijo += apariciones.tamano.get();
+            listas.add(apariciones.ids);
+        }
+        if (listas.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (tamanoPrefijo >= tamanoMenor) {
+            return cursor == null ? menor : menor.tailSet(cursor, false);
+        }
+        if (it.hasNext()) {
+            return porInicial(inicial(prefijo), menor, tamanoMenor, cursor);
+        }
+        return () -> new Union(listas, cursor);
+    }
+
+    /**
+     * La más corta entre la lista de la inicial y la de la palabra completa más corta.
+     */
+    private Iterable<Long> porInicial(String inicial, NavigableSet<Long> menor, int tamanoMenor, Long cursor) {
+        Apariciones apariciones = iniciales.get(inicial);
+        if (apariciones == null) {
+            return Collections.emptyList();
+        }
+        NavigableSet<Long> lista = apariciones.tamano.get() < tamanoMenor ? apariciones.ids : menor;
+        return cursor == null ? lista : lista.tailSet(cursor, false);
+    }
+
+    /**
+     * El primer carácter (punto de código) de cada palabra, sin repetir.
+     */
+    private static Set<String> iniciales(Set<String> palabras) {
+        Set<String> iniciales = new LinkedHashSet<>();
+        for (String palabra : palabras) {
+            iniciales.add(inicial(palabra));
+        }
+        return iniciales;
+    }
+
+    private static String inicial(String palabra) {
+        return palabra.substring(0, palabra.offsetByCodePoints(0, 1));
+    }
+
+    private static Set<String> palabras(Collection<String> textos) {
+        Set<String> palabras = new LinkedHashSet<>();
+        for (String texto : textos) {
+            palabras.addAll(palabras(texto));
+        }
+        return palabras;
+    }
+
+    /**
+     * Separa el texto en palabras sin acentos y en minúsculas, sin repetir.
+     */
+    static Set<String> palabras(String texto) {
+        Set<String> palabras = new LinkedHashSet<>();
+        if (texto == null) {
+            return palabras;
+        }
+        String normalizado = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String palabra : SEPARADORES.split(normalizado)) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+
+    /**
+     * Convierte el texto de búsqueda en una consulta, o devuelve null si no tiene palabras.
+     * La última palabra se busca como prefijo (para autocompletar mientras se escribe) y las demás completas.
+     */
+    static Consulta consulta(String texto) {
+        List<String> palabras = new ArrayList<>(palabras(texto));
+        if (palabras.isEmpty()) {
+            return null;
+        }
+        String prefijo = palabras.remove(palabras.size() - 1);
+        return new Consulta(List.copyOf(palabras), prefijo);
+    }
+
+    record Consulta(List<String> completas, String prefijo) {
+
+        /**
+         * Indica si el nombre tiene todas las palabras completas y alguna que empiece por el prefijo.
+         */
+        boolean coincide(String nombre) {
+            Set<String> palabras = palabras(nombre);
+            return palabras.containsAll(completas) && palabras.stream().anyMatch(palabra -> palabra.startsWith(prefijo));
+        }
+    }
+
+    private static final class Apariciones {
+        private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+        private final AtomicInteger tamano = new AtomicInteger();
+    }
+
+    /**
+     * Recorre en orden ascendente y sin repetir la unión de varias listas ordenadas de ids.
+     * Solo avanza lo que se consume, así que una página cuesta su tamaño por log del número de listas.
+     */
+    private static final class Union implements Iterator<Long> {
+        private final PriorityQueue<Cabeza> cabezas = new PriorityQueue<>();
+        private Long ultimo;
+
+        private Union(List<NavigableSet<Long>> listas, Long cursor) {
+            for (NavigableSet<Long> lista : listas) {
+                avanzar(new Cabeza((cursor == null ? lista : lista.tailSet(cursor, false)).iterator()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!cabezas.isEmpty() && cabezas.peek().id.equals(ultimo)) {
+                avanzar(cabezas.poll());
+            }
+            return !cabezas.isEmpty();
+        }
+
+        @Override
+        public Long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Cabeza cabeza = cabezas.poll();
+            ultimo = cabeza.id;
+            avanzar(cabeza);
+            return ultimo;
+        }
+
+        private void avanzar(Cabeza cabeza) {
+            if (cabeza.ids.hasNext()) {
+                cabeza.id = cabeza.ids.next();
+                cabezas.add(cabeza);
+            }
+        }
+
+        private static final class Cabeza implements Comparable<Cabeza> {
+            private final Iterator<Long> ids;
+            private Long id;
+
+            private Cabeza(Iterator<Long> ids) {
+                this.ids = ids;
+            }
+
+            @Override
+            public int compareTo(Cabeza otra) {
+                return id.compareTo(otra.id);
+            }
+        }
+    }
+}
@@ -1,58 +1,156 @@
 package com.henrry.Api_crud.Service;
 
+import com.henrry.Api_crud.Models.EstadisticasPedidos;
+import com.henrry.Api_crud.Models.FiltroPedido;
 import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Models.ResumenPedidos;
+import com.henrry.Api_crud.Persistence.EstadoAlmacen;
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Service.Traducciones.Traduccion;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @Service
 public class PedidoService {
 
+        /**
+         * Campos traducibles de los pedidos.
+         */
+        static final String CLIENTE = "cliente";
+        static final String PRODUCTO = "producto";
 
+        private final ConversionMonedaService conversionMoneda;
 
-        // Inicializamos con algunos datos para pruebas
-        public List<Pedido> pedidoList(Locale locale) {
-            final List<Pedido> pedidos = new ArrayList<>();
-            if (locale.getLanguage().equals("es")) {
-                pedidos.add(new Pedido(1L, "Cliente 1", "Producto 1", 2, calcularPrecioPorIdioma(99.99,locale.toLanguageTag())));
-                pedidos.add(new Pedido(2L, "Cliente 2", "Producto 2", 1, calcularPrecioPorIdioma(199.99,locale.toLanguageTag())));
-                pedidos.add(new Pedido(3L, "Cliente 3", "Producto 3", 3, calcularPrecioPorIdioma(49.99,locale.toLanguageTag())));
-            } else if (locale.getLanguage().equals("fr")) {
-                pedidos.add(new Pedido(1L, "Client 1", "Produit 1", 2, calcularPrecioPorIdioma(99.99,locale.toLanguageTag())));
-                pedidos.add(new Pedido(2L, "Client 2", "Produit 2", 1, calcularPrecioPorIdioma(199.99,locale.toLanguageTag())));
-                pedidos.add(new Pedido(3L, "Client 3", "Produit 3", 3, calcularPrecioPorIdioma(49.99,locale.toLanguageTag())));
-            } else if (locale.getLanguage().equals("en")) {
-                pedidos.add(new Pedido(1L, "Customer 1", "Product 1", 2, calcularPrecioPorIdioma(99.99,locale.toLanguageTag())));
-                pedidos.add(new Pedido(2L, "Customer 2", "Product 2", 1, calcularPrecioPorIdioma(199.99,locale.toLanguageTag())));
-                pedidos.add(new Pedido(3L, "Customer 3", "Product 3", 3, calcularPrecioPorIdioma(49.99,locale.toLanguageTag())));
-            }
-            return pedidos;
+        private final ProductoService productoService;
+
+        private final RegistroCambios registro;
+
+        /**
+         * Pedidos en memoria, uno solo para todos los idiomas. Se recuperan del registro de cambios al
+         * crear el servicio; si el registro está vacío se inicializan con algunos datos para pruebas.
+         */
+        private final RepositorioPedidos repositorio;
+
+        public PedidoService(ConversionMonedaService conversionMoneda, ProductoService productoService, RegistroCambios registro) {
+            this.conversionMoneda = conversionMoneda;
+            this.productoService = productoService;
+            this.registro = registro;
+            // Los precios de los datos iniciales están en euros y los textos en el idioma canónico
+            this.repositorio = new RepositorioPedidos(List.of(
+                    new Pedido(1L, "Customer 1", "Product 1", 2, 99.99, 1L),
+                    new Pedido(2L, "Customer 2", "Product 2", 1, 199.99, 1L),
+                    new Pedido(3L, "Customer 3", "Product 3", 3, 49.99, 1L)),
+                    Map.of(1L, traduccionesSemilla(1), 2L, traduccionesSemilla(2), 3L, traduccionesSemilla(3)));
+        }
+
+        private static List<Traduccion> traduccionesSemilla(int numero) {
+            return List.of(
+                    new Traduccion(CLIENTE, "es", "Cliente " + numero), new Traduccion(PRODUCTO, "es", "Producto " + numero),
+                    new Traduccion(CLIENTE, "fr", "Client " + numero), new Traduccion(PRODUCTO, "fr", "Produit " + numero));
         }
 
         /***
          * Agregar un pedido
+         * Si trae productoId, el precio se calcula con el del catálogo (en euros); si no, llega en la moneda del idioma de la solicitud.
+         * Se guarda en euros y con los textos recibidos como canónicos, así que se ve en todos los idiomas.
+         * El Mono se completa cuando el alta ya está en el registro de cambios.
          *
          * @param pedido
-         * @return
+         * @return El pedido creado, o un error {@link ProductoNoEncontradoException} si el producto no existe.
          */
         public Mono<Pedido> agregarPedido(Pedido pedido,Locale locale) {
-            pedido.setId((long) (pedidoList(locale).size() + 1)); // Simulamos un ID autoincrementable
-            pedidoList(locale).add(pedido);
-            return Mono.just(pedido);
+            try {
+                tomarPrecioDelCatalogo(pedido, locale);
+            } catch (ProductoNoEncontradoException e) {
+                return Mono.error(e);
+            }
+            String idioma = Traducciones.idioma(locale);
+            CodificacionEntidades.Guardado<Pedido> nuevo = nuevo(pedido, idioma);
+            return Mono.fromFuture(repositorio.guardar(nuevo.entidad(), nuevo.traducciones()))
+                    .thenReturn(repositorio.enIdioma(nuevo.entidad(), idioma));
+        }
+
+        private CodificacionEntidades.Guardado<Pedido> nuevo(Pedido pedido, String idioma) {
+            List<Traduccion> traducciones = new ArrayList<>();
+            Pedido canonico = canonico(repositorio.secuencia.incrementAndGet(), pedido, idioma, null, traducciones, 1L);
+            return new CodificacionEntidades.Guardado<>(canonico, traducciones);
+        }
+
+        /**
+         * Agregar un bloque de pedidos con una sola llamada.
+         * Devuelve los pedidos creados en el mismo orden en que llegaron.
+         * Los productos se revisan antes de guardar nada: si uno no existe no se crea ningún pedido del bloque,
+         * así que quien quiera crear los demás debe descartarlo antes con {@link #revisarProducto}.
+         *
+         * @param pedidos
+         * @return
+         */
+        public Flux<Pedido> agregarPedidos(List<Pedido> pedidos,Locale locale) {
+            try {
+                pedidos.forEach(pedido -> tomarPrecioDelCatalogo(pedido, locale));
+            } catch (ProductoNoEncontradoException e) {
+                return Flux.error(e);
+            }
+            String idioma = Traducciones.idioma(locale);
+            List<CodificacionEntidades.Guardado<Pedido>> nuevos = pedidos.stream().map(pedido -> nuevo(pedido, idioma)).toList();
+            // Se registran todos y se espera una sola vez: el bloque entero se sincroniza en el mismo grupo
+            CompletableFuture<?>[] escrituras = nuevos.stream()
+                    .map(nuevo -> repositorio.guardar(nuevo.entidad(), nuevo.traducciones()))
+                    .toArray(CompletableFuture[]::new);
+            return Mono.fromFuture(CompletableFuture.allOf(escrituras))
+                    .thenMany(Flux.fromIterable(nuevos).map(nuevo -> repositorio.enIdioma(nuevo.entidad(), idioma)));
         }
 
         /**
-         * Listar todos los pedidos
+         * Listar todos los pedidos, ordenados por id.
+         * El Flux recorre el índice de forma perezosa, elemento a elemento según la demanda.
          *
          * @return
          */
         public Flux<Pedido> listarPedidos(Locale locale) {
-            return Flux.fromIterable(pedidoList(locale));
+            return listarPedidos(locale, new FiltroPedido(), null, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Listar una página de pedidos ordenados por id (paginación por cursor).
+         * Si se filtra por cliente o producto se recorre el índice secundario correspondiente,
+         * así que el costo depende del tamaño de la página y no del total de pedidos.
+         * Los rangos de cantidad se evalúan sobre los pedidos recorridos.
+         * Cada pedido se traduce al idioma, y su precio a la moneda, a medida que se emite.
+         *
+         * @param filtro Filtros opcionales.
+         * @param cursor Último id de la página anterior, o null para empezar desde el principio.
+         * @param limite Número máximo de pedidos a devolver.
+         * @return
+         */
+        public Flux<Pedido> listarPedidos(Locale locale, FiltroPedido filtro, Long cursor, int limite) {
+            String idioma = Traducciones.idioma(locale);
+            NavigableSet<Long> ids = filtro.tieneCliente() ? repositorio.ids(repositorio.porCliente, filtro.getCliente())
+                    : filtro.tieneProducto() ? repositorio.ids(repositorio.porProducto, filtro.getProducto())
+                    : repositorio.ids;
+            // Los índices tienen los textos de todos los idiomas: el filtro se evalúa sobre el pedido ya traducido
+            return Flux.fromIterable(cursor == null ? ids : ids.tailSet(cursor, false))
+                    .mapNotNull(repositorio.pedidos::get)
+                    .map(pedido -> repositorio.enIdioma(pedido, idioma))
+                    .filter(filtro::cumple)
+                    .take(limite, true);
         }
 
         /**
@@ -62,64 +160,460 @@ public class PedidoService {
          * @return
          */
         public Mono<Pedido> obtenerPedidoPorId(Long id,Locale locale) {
-            return Mono.justOrEmpty(
-                    pedidoList(locale).stream()
-                            .filter(p -> p.getId().equals(id))
-                            .findFirst()
-            );
+            String idioma = Traducciones.idioma(locale);
+            return Mono.justOrEmpty(repositorio.pedidos.get(id)).map(pedido -> repositorio.enIdioma(pedido, idioma));
         }
 
         /**
          * Método para actualizar un pedido
-         * Se utiliza Optional para manejar el caso en el que un pedido no se encuentra.
+         * Si el pedido no existe se devuelve un Mono vacío, que el controlador traduce a 404.
          *
          * @param pedido
          * @return
          */
         public Mono<Pedido> actualizarPedido(Pedido pedido,Locale locale) {
-            Mono<Pedido> pedidoExistente = obtenerPedidoPorId(pedido.getId(),locale);
-            if (pedidoExistente.blockOptional().isPresent()) {
-                Mono<Pedido> p = pedidoExistente;
-                p.block().setCliente(pedido.getCliente());
-                p.block().setProducto(pedido.getProducto());
-                p.block().setCantidad(pedido.getCantidad());
-                p.block().setPrecioTotal(pedido.getPrecioTotal());
-                return p;
-            } else {
+            return actualizarPedido(pedido, locale, null);
+        }
+
+        /**
+         * Actualiza el pedido solo si su versión guardada es la esperada (concurrencia optimista).
+         * La cantidad y el precio son los mismos en todos los idiomas; el cliente y el producto, en el
+         * idioma canónico reemplazan a los canónicos y en otro idioma se guardan como su traducción.
+         * El pedido guardado nunca se modifica: se reemplaza por una copia con la versión siguiente,
+         * así que un lector nunca ve el cliente de una escritura con el precio de otra.
+         *
+         * @param pedido          Nuevos datos; el id indica qué pedido actualizar.
+         * @param versionEsperada Versión que el cliente leyó, o null para actualizar sin condición.
+         * @return El pedido actualizado, vacío si no existe, o un error {@link ConflictoVersionException}
+         *         si la versión guardada es otra ({@link ProductoNoEncontradoException} si el producto no existe).
+         */
+        public Mono<Pedido> actualizarPedido(Pedido pedido, Locale locale, Long versionEsperada) {
+            try {
+                tomarPrecioDelCatalogo(pedido, locale);
+            } catch (ProductoNoEncontradoException e) {
+                return Mono.error(e);
+            }
+            String idioma = Traducciones.idioma(locale);
+            CompletableFuture<?>[] escritura = new CompletableFuture<?>[1];
+            long[] versionActual = {-1};
+            Pedido[] anterior = new Pedido[1];
+            List<Traduccion> traduccionesAnteriores = new ArrayList<>();
+            Pedido actualizado = repositorio.pedidos.computeIfPresent(pedido.getId(), (id, existente) -> {
+                if (versionEsperada != null && versionEsperada != existente.getVersion().longValue()) {
+                    versionActual[0] = existente.getVersion();
+                    return existente;
+                }
+                List<Traduccion> anteriores = repositorio.traducciones.de(id);
+                anterior[0] = existente;
+                traduccionesAnteriores.addAll(anteriores);
+                List<Traduccion> traducciones = new ArrayList<>(anteriores);
+                Pedido nuevo = canonico(id, pedido, idioma, existente, traducciones, existente.getVersion() + 1);
+                repositorio.desindexar(existente, anteriores);
+                repositorio.indexar(nuevo, traducciones);
+                repositorio.acumulados.restar(existente, anteriores);
+                repositorio.acumulados.sumar(nuevo, traducciones);
+                repositorio.traducciones.reemplazar(id, traducciones);
+                escritura[0] = registro.guardar(RepositorioPedidos.ALMACEN, id, CodificacionEntidades.pedido(nuevo, traducciones));
+                repositorio.convertirPrecio(id, nuevo);
+                return nuevo;
+            });
+            if (actualizado == null) {
+                return Mono.empty();
+            }
+            if (escritura[0] == null) {
+                return Mono.error(new ConflictoVersionException(versionEsperada, versionActual[0]));
+            }
+            repositorio.deshacerSiFalla(escritura[0], actualizado.getId(), actualizado, anterior[0], traduccionesAnteriores);
+            return Mono.fromFuture(escritura[0]).thenReturn(repositorio.enIdioma(actualizado, idioma));
+        }
+
+        /**
+         * Revisa que el producto del catálogo al que hace referencia el pedido exista.
+         *
+         * @return null si el pedido no trae productoId o si el producto existe; si no, el motivo del rechazo.
+         */
+        public String revisarProducto(Pedido pedido, Locale locale) {
+            if (pedido.getProductoId() == null) {
                 return null;
             }
+            Producto producto = productoService.buscarProducto(pedido.getProductoId(), locale);
+            return producto == null || producto.getPrecio() == null
+                    ? new ProductoNoEncontradoException(pedido.getProductoId()).getMessage() : null;
+        }
+
+        /**
+         * Si el pedido hace referencia a un producto del catálogo, reemplaza el nombre y el precio total
+         * que trae por los del producto vigente (precio × cantidad). Es una búsqueda por id en el catálogo,
+         * con el nombre en el idioma de la solicitud. Los precios del catálogo están en euros en todos los
+         * idiomas, así que el precio total queda en euros y no depende del idioma de la solicitud.
+         * El precio queda fijo en el pedido: si después cambia el del producto, el pedido no cambia.
+         */
+        private void tomarPrecioDelCatalogo(Pedido pedido, Locale locale) {
+            if (pedido.getProductoId() == null) {
+                return;
+            }
+            Producto producto = productoService.buscarProducto(pedido.getProductoId(), locale);
+            if (producto == null || producto.getPrecio() == null) {
+                throw new ProductoNoEncontradoException(pedido.getProductoId());
+            }
+            pedido.setProducto(producto.getNombre());
+            pedido.setPrecioTotal(BigDecimal.valueOf(producto.getPrecio())
+                    .multiply(BigDecimal.valueOf(pedido.getCantidad())).doubleValue());
+        }
+
+        /**
+         * Pasa el pedido recibido en el idioma de la solicitud a su forma canónica, con el precio en
+         * euros, y deja en la lista sus traducciones. En un pedido nuevo o en el idioma canónico los
+         * textos recibidos son los canónicos; en otro idioma se conservan los del pedido existente y
+         * los recibidos se guardan como traducción. El nombre de un producto del catálogo se toma del
+         * catálogo en cada idioma.
+         */
+        private Pedido canonico(long id, Pedido pedido, String idioma, Pedido existente, List<Traduccion> traducciones, long version) {
+            String cliente = pedido.getCliente();
+            String producto = pedido.getProducto();
+            if (existente != null && !idioma.equals(Traducciones.IDIOMA_CANONICO)) {
+                Traducciones.poner(traducciones, CLIENTE, idioma, cliente, existente.getCliente());
+                Traducciones.poner(traducciones, PRODUCTO, idioma, producto, existente.getProducto());
+                cliente = existente.getCliente();
+                producto = existente.getProducto();
+            }
+            if (pedido.getProductoId() != null) {
+                producto = nombresDelCatalogo(pedido.getProductoId(), producto, traducciones);
+            }
+            // Con producto del catálogo el precio ya está en euros; si no, llega en la moneda de la solicitud
+            BigDecimal precioBase = pedido.getProductoId() != null ? BigDecimal.valueOf(pedido.getPrecioTotal())
+                    : conversionMoneda.precioBase(pedido.getPrecioTotal(), Locale.forLanguageTag(idioma));
+            return new Pedido(id, cliente, producto, pedido.getProductoId(), pedido.getCantidad(), precioBase.doubleValue(), version);
+        }
+
+        /**
+         * Pone en la lista el nombre del producto en cada idioma y devuelve el canónico. Si el producto
+         * se eliminó mientras tanto se conserva el nombre que ya tenía el pedido.
+         */
+        private String nombresDelCatalogo(long productoId, String nombre, List<Traduccion> traducciones) {
+            Producto canonico = productoService.buscarProducto(productoId, Locale.forLanguageTag(Traducciones.IDIOMA_CANONICO));
+            if (canonico == null) {
+                return nombre;
+            }
+            for (String idioma : Traducciones.IDIOMAS) {
+                if (!idioma.equals(Traducciones.IDIOMA_CANONICO)) {
+                    Producto traducido = productoService.buscarProducto(productoId, Locale.forLanguageTag(idioma));
+                    Traducciones.poner(traducciones, PRODUCTO, idioma, traducido != null ? traducido.getNombre() : null,
+                            canonico.getNombre());
+                }
+            }
+            return canonico.getNombre();
         }
 
         /**
          * Método para eliminar un pedido
+         * Se elimina en todos los idiomas, junto con sus traducciones.
+         * El Mono se completa cuando la baja ya está en el registro de cambios.
          *
          * @param id
          */
-        public void eliminarPedido(Long id,Locale locale) {
-            pedidoList(locale).removeIf(p -> p.getId().equals(id));
+        public Mono<Void> eliminarPedido(Long id,Locale locale) {
+            return Mono.fromFuture(repositorio.eliminar(id)).then();
+        }
+
+        /**
+         * Estadísticas de los pedidos en el idioma: totales y los clientes y productos con mayor importe.
+         * Se leen de los acumulados que se actualizan con cada escritura, sin recorrer los pedidos.
+         * Los clientes y productos se agrupan por su nombre en el idioma, y los importes se convierten
+         * a la moneda del idioma con las tasas vigentes.
+         *
+         * @param limite Cuántos clientes y productos devolver como máximo.
+         * @return
+         */
+        public Mono<EstadisticasPedidos> estadisticas(Locale locale, int limite) {
+            return Mono.fromSupplier(() -> {
+                String idioma = Traducciones.idioma(locale);
+                AcumuladosPedidos acumulados = repositorio.acumulados;
+                return new EstadisticasPedidos(resumen(acumulados.total(), idioma),
+                        acumulados.mayoresClientes(idioma, limite).stream().map(suma -> resumen(suma, idioma)).toList(),
+                        acumulados.mayoresProductos(idioma, limite).stream().map(suma -> resumen(suma, idioma)).toList());
+            });
+        }
+
+        /**
+         * Totales de los pedidos de un cliente, por su nombre en el idioma, o un Mono vacío si no tiene pedidos.
+         *
+         * @param cliente
+         * @return
+         */
+        public Mono<ResumenPedidos> estadisticasCliente(String cliente, Locale locale) {
+            String idioma = Traducciones.idioma(locale);
+            return Mono.justOrEmpty(repositorio.acumulados.cliente(idioma, cliente)).map(suma -> resumen(suma, idioma));
+        }
+
+        /**
+         * Totales de los pedidos de un producto, por su nombre en el idioma, o un Mono vacío si no tiene pedidos.
+         *
+         * @param producto
+         * @return
+         */
+        public Mono<ResumenPedidos> estadisticasProducto(String producto, Locale locale) {
+            String idioma = Traducciones.idioma(locale);
+            return Mono.justOrEmpty(repositorio.acumulados.producto(idioma, producto)).map(suma -> resumen(suma, idioma));
+        }
+
+        private ResumenPedidos resumen(AcumuladosPedidos.Suma suma, String idioma) {
+            return new ResumenPedidos(suma.nombre(), suma.pedidos(), suma.unidades(),
+                    conversionMoneda.tasas().convertir(BigDecimal.valueOf(suma.importeBase()), idioma).doubleValue());
+        }
+
+        /**
+         * Vuelve a convertir los precios de todos los pedidos cuando cambian las tasas de cambio.
+         *
+         * @param evento
+         */
+        @EventListener
+        public void tasasActualizadas(TasasCambioActualizadas evento) {
+            repositorio.convertirPrecios();
+        }
+
+        /**
+         * Número de pedidos guardados (se publica como métrica).
+         *
+         * @return
+         */
+        public int contarPedidos() {
+            return repositorio.pedidos.size();
         }
 
     /**
-     * Método para calcular el precio total de un pedido según el idioma.
-     *
-     * @param precioTotal El precio total del pedido.
-     * @param idioma      El idioma en el que se desea calcular el precio.
-     * @return El precio total ajustado según el idioma.
+     * Pedidos indexados por id, guardados una sola vez con los textos en el idioma canónico y el
+     * precio en euros; los textos en otros idiomas están en la tabla de traducciones y el precio en la
+     * moneda de cada idioma en una tabla aparte, que se recalcula cuando cambian las tasas sin tocar los pedidos.
+     * Los ids salen de un contador atómico que solo crece, así que nunca se reutilizan aunque se eliminen pedidos.
+     * Además del mapa principal se mantienen índices ordenados por id: todos los ids (para la
+     * paginación por cursor) y los ids de cada cliente y de cada producto, con sus textos en todos
+     * los idiomas, y los acumulados para las estadísticas.
+     * Los cambios, y las traducciones del pedido, se registran dentro de compute/computeIfPresent,
+     * así que para un mismo id el orden del registro es el mismo que el del mapa. Los pedidos del
+     * mapa no se modifican: cada cambio reemplaza la entrada por otra instancia.
      */
-    private double calcularPrecioPorIdioma(double precioTotal, String idioma) {
-        switch (idioma.toLowerCase()) {
-            case "es":
-                // Precio en euros (sin conversión)
-                return precioTotal;
-            case "en":
-                // Convertir a dólares (1 EUR = 1.18 USD)
-                return precioTotal * 1.18;
-            case "fr":
-                // Convertir a francos suizos (1 EUR = 1.08 CHF)
-                return precioTotal * 1.08;
-            default:
-                // Si el idioma no es válido, devolver el precio original
-                return precioTotal;
+    private final class RepositorioPedidos {
+        private static final String ALMACEN = "pedidos";
+
+        private final ConcurrentMap<Long, Pedido> pedidos;
+        private final Traducciones traducciones = new Traducciones(CLIENTE, PRODUCTO);
+        private final AtomicLong secuencia = new AtomicLong();
+        private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+        private final ConcurrentMap<String, ConcurrentSkipListSet<Long>> porCliente = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, ConcurrentSkipListSet<Long>> porProducto = new ConcurrentHashMap<>();
+        private final AcumuladosPedidos acumulados = new AcumuladosPedidos();
+        /**
+         * Precio de cada pedido ya convertido a la moneda de cada idioma, en el orden de {@link Traducciones#IDIOMAS}.
+         * Se calcula al escribir el pedido y de nuevo cuando cambian las tasas, así que leer no convierte nada.
+         */
+        private final ConcurrentMap<Long, PreciosPedido> precios = new ConcurrentHashMap<>();
+
+        private RepositorioPedidos(List<Pedido> semilla, Map<Long, List<Traduccion>> traduccionesSemilla) {
+            if (registro.vacio()) {
+                this.pedidos = new ConcurrentHashMap<>();
+                for (Pedido pedido : semilla) {
+                    guardar(pedido, traduccionesSemilla.getOrDefault(pedido.getId(), List.of()));
+                    secuencia.accumulateAndGet(pedido.getId(), Math::max);
+                }
+                return;
+            }
+            EstadoAlmacen estado = registro.recuperar(ALMACEN);
+            this.pedidos = new ConcurrentHashMap<>(estado.entidades().size());
+            estado.entidades().forEach((id, datos) -> {
+                CodificacionEntidades.Guardado<Pedido> guardado = CodificacionEntidades.pedido(id, datos);
+                pedidos.put(id, guardado.entidad());
+                convertirPrecio(id, guardado.entidad());
+                ids.add(id);
+                traducciones.reemplazar(id, guardado.traducciones());
+                indexar(guardado.entidad(), guardado.traducciones());
+                acumulados.sumar(guardado.entidad(), guardado.traducciones());
+            });
+            secuencia.set(estado.ultimoId());
+        }
+
+        /**
+         * El pedido como se ve en el idioma, con el precio en su moneda. Siempre es una instancia nueva.
+         */
+        private Pedido enIdioma(Pedido pedido, String idioma) {
+            long id = pedido.getId();
+            return new Pedido(id, traducciones.traducir(id, CLIENTE, idioma, pedido.getCliente()),
+                    traducciones.traducir(id, PRODUCTO, idioma, pedido.getProducto()), pedido.getProductoId(), pedido.getCantidad(),
+                    precioEnIdioma(pedido, idioma), pedido.getVersion());
+        }
+
+        private double precioEnIdioma(Pedido pedido, String idioma) {
+            PreciosPedido convertidos = precios.get(pedido.getId());
+            if (convertidos == null || convertidos.pedido() != pedido) {
+                // Otro hilo cambió el pedido entre las dos lecturas
+                return conversionMoneda.tasas().convertir(BigDecimal.valueOf(pedido.getPrecioTotal()), idioma).doubleValue();
+            }
+            return convertidos.porIdioma()[Traducciones.IDIOMAS.indexOf(idioma)];
+        }
+
+        /**
+         * Convierte el precio del pedido a todos los idiomas, o lo olvida si el pedido es null.
+         * Se llama dentro del compute que cambia el pedido, para que ambos queden a la par.
+         */
+        private void convertirPrecio(long id, Pedido pedido) {
+            if (pedido == null) {
+                precios.remove(id);
+                return;
+            }
+            TasasCambio tasas = conversionMoneda.tasas();
+            BigDecimal base = BigDecimal.valueOf(pedido.getPrecioTotal());
+            double[] porIdioma = new double[Traducciones.IDIOMAS.size()];
+            for (int i = 0; i < porIdioma.length; i++) {
+                porIdioma[i] = tasas.convertir(base, Traducciones.IDIOMAS.get(i)).doubleValue();
+            }
+            precios.put(id, new PreciosPedido(pedido, porIdioma));
+        }
+
+        private void convertirPrecios() {
+            for (Long id : pedidos.keySet()) {
+                pedidos.computeIfPresent(id, (clave, pedido) -> {
+                    convertirPrecio(clave, pedido);
+                    return pedido;
+                });
+            }
+        }
+
+        private CompletableFuture<?> guardar(Pedido pedido, List<Traduccion> traduccionesPedido) {
+            CompletableFuture<?>[] escritura = new CompletableFuture<?>[1];
+            pedidos.compute(pedido.getId(), (id, anterior) -> {
+                traducciones.reemplazar(id, traduccionesPedido);
+                escritura[0] = registro.guardar(ALMACEN, id, CodificacionEntidades.pedido(pedido, traduccionesPedido));
+                acumulados.sumar(pedido, traduccionesPedido);
+                convertirPrecio(id, pedido);
+                return pedido;
+            });
+            ids.add(pedido.getId());
+            indexar(pedido, traduccionesPedido);
+            return deshacerSiFalla(escritura[0], pedido.getId(), pedido, null, List.of());
+        }
+
+        private CompletableFuture<?> eliminar(Long id) {
+            CompletableFuture<?>[] escritura = new CompletableFuture<?>[1];
+            Pedido[] eliminado = new Pedido[1];
+            List<Traduccion> traduccionesEliminado = new ArrayList<>();
+            pedidos.computeIfPresent(id, (clave, pedido) -> {
+                escritura[0] = registro.eliminar(ALMACEN, clave);
+                traduccionesEliminado.addAll(traducciones.de(clave));
+                acumulados.restar(pedido, traduccionesEliminado);
+                traducciones.reemplazar(clave, List.of());
+                convertirPrecio(clave, null);
+                eliminado[0] = pedido;
+                return null;
+            });
+            if (eliminado[0] == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            ids.remove(id);
+            desindexar(eliminado[0], traduccionesEliminado);
+            return deshacerSiFalla(escritura[0], id, null, eliminado[0], traduccionesEliminado);
+        }
+
+        /**
+         * Si el cambio no llega al registro, devuelve el pedido al estado anterior, a menos que otro
+         * cambio ya lo haya reemplazado. Se registra después de tocar el mapa, los índices y los
+         * acumulados: un futuro que ya falló ejecuta la reversión en el acto.
+         *
+         * @param escrito  Pedido que dejó el cambio, o null si fue una baja.
+         * @param anterior Pedido antes del cambio, o null si fue un alta.
+         */
+        private CompletableFuture<?> deshacerSiFalla(CompletableFuture<?> escritura, long id, Pedido escrito,
+                                                     Pedido anterior, List<Traduccion> traduccionesAnteriores) {
+            escritura.whenComplete((listo, error) -> {
+                if (error != null) {
+                    deshacer(id, escrito, anterior, traduccionesAnteriores);
+                }
+            });
+            return escritura;
+        }
+
+        private void deshacer(long id, Pedido escrito, Pedido anterior, List<Traduccion> traduccionesAnteriores) {
+            boolean[] deshecho = {false};
+            pedidos.compute(id, (clave, actual) -> {
+                if (actual != escrito) {
+                    return actual;
+                }
+                if (escrito != null) {
+                    List<Traduccion> escritas = traducciones.de(clave);
+                    desindexar(escrito, escritas);
+                    acumulados.restar(escrito, escritas);
+                }
+                traducciones.reemplazar(clave, traduccionesAnteriores);
+                if (anterior != null) {
+                    indexar(anterior, traduccionesAnteriores);
+                    acumulados.sumar(anterior, traduccionesAnteriores);
+                }
+                convertirPrecio(clave, anterior);
+                deshecho[0] = true;
+                return anterior;
+            });
+            if (!deshecho[0]) {
+                return;
+            }
+            if (anterior != null) {
+                ids.add(id);
+            } else {
+                ids.remove(id);
+            }
+        }
+
+        /**
+         * Agrega el pedido a los índices por cliente y por producto, con sus textos en todos los idiomas.
+         */
+        private void indexar(Pedido pedido, List<Traduccion> traduccionesPedido) {
+            for (String cliente : Traducciones.variantes(traduccionesPedido, CLIENTE, pedido.getCliente())) {
+                agregarAlIndice(porCliente, cliente, pedido.getId());
+            }
+            for (String producto : Traducciones.variantes(traduccionesPedido, PRODUCTO, pedido.getProducto())) {
+                agregarAlIndice(porProducto, producto, pedido.getId());
+            }
+        }
+
+        /**
+         * Quita el pedido de los índices por cliente y por producto.
+         */
+        private void desindexar(Pedido pedido, List<Traduccion> traduccionesPedido) {
+            for (String cliente : Traducciones.variantes(traduccionesPedido, CLIENTE, pedido.getCliente())) {
+                quitarDelIndice(porCliente, cliente, pedido.getId());
+            }
+            for (String producto : Traducciones.variantes(traduccionesPedido, PRODUCTO, pedido.getProducto())) {
+                quitarDelIndice(porProducto, producto, pedido.getId());
+            }
+        }
+
+        private NavigableSet<Long> ids(ConcurrentMap<String, ConcurrentSkipListSet<Long>> indice, String valor) {
+            NavigableSet<Long> ids = indice.get(valor);
+            return ids != null ? ids : Collections.emptyNavigableSet();
+        }
+
+        // compute/computeIfPresent bloquean la entrada del mapa, así que un conjunto vacío
+        // no se puede eliminar mientras otro hilo le agrega un id
+        private static void agregarAlIndice(ConcurrentMap<String, ConcurrentSkipListSet<Long>> indice, String valor, Long id) {
+            if (valor == null) {
+                return;
+            }
+            indice.compute(valor, (clave, ids) -> {
+                ConcurrentSkipListSet<Long> conjunto = ids != null ? ids : new ConcurrentSkipListSet<>();
+                conjunto.add(id);
+                return conjunto;
+            });
+        }
+
+        private static void quitarDelIndice(ConcurrentMap<String, ConcurrentSkipListSet<Long>> indice, String valor, Long id) {
+            if (valor == null) {
+                return;
+            }
+            indice.computeIfPresent(valor, (clave, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+
+        private record PreciosPedido(Pedido pedido, double[] porIdioma) {
         }
     }
 }
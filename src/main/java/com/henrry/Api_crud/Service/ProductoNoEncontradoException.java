@@ -0,0 +1,12 @@
+package com.henrry.Api_crud.Service;
+
+/**
+ * Se lanza cuando un pedido hace referencia a un producto que no está en el catálogo del idioma
+ * o que no tiene precio, así que no se le puede calcular el precio total.
+ */
+public class ProductoNoEncontradoException extends RuntimeException {
+
+    public ProductoNoEncontradoException(long productoId) {
+        super("No existe un producto con precio con el id " + productoId);
+    }
+}
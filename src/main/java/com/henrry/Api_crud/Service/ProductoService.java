@@ -1,7 +1,10 @@
 package com.henrry.Api_crud.Service;
 
-import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.FiltroProducto;
 import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Persistence.EstadoAlmacen;
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Service.Traducciones.Traduccion;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -9,55 +12,125 @@ import reactor.core.publisher.Mono;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class ProductoService {
 
-    final List<Producto> productos = new ArrayList<>();
+    /**
+     * Campo traducible de los productos.
+     */
+    static final String NOMBRE = "nombre";
 
-    public List<Producto> ProductosList(Locale locale) {
+    private final RegistroCambios registro;
 
-        switch (locale.getLanguage()) {
-            case "es" -> {
-                productos.add(new Producto(1L, "iPhone 14", 999.99));
-                productos.add(new Producto(2L, "Samsung TV", 1299.99));
-                productos.add(new Producto(3L, "Nike Air Max", 79.99));
-            }
-            case "fr" -> {
-                productos.add(new Producto(1L, "iPhone 14", 999.99));
-                productos.add(new Producto(2L, "Téléviseur Samsung", 1299.99));
-                productos.add(new Producto(3L, "Nike Air Max", 79.99));
-            }
-            case "en" -> {
-                productos.add(new Producto(1L, "iPhone 14", 999.99));
-                productos.add(new Producto(2L, "Samsung TV", 1299.99));
-                productos.add(new Producto(3L, "Nike Air Max", 79.99));
-            }
-        }
+    /**
+     * Catálogo en memoria, uno solo para todos los idiomas. Se recupera del registro de cambios al
+     * crear el servicio; los datos iniciales solo se cargan si el registro está vacío.
+     */
+    private final Catalogo catalogo;
 
-        return productos;
+    public ProductoService(RegistroCambios registro) {
+        this.registro = registro;
+        // Los nombres están en el idioma canónico; solo se traducen los que cambian en otro idioma
+        this.catalogo = new Catalogo(List.of(
+                new Producto(1L, "iPhone 14", 999.99, 1L),
+                new Producto(2L, "Samsung TV", 1299.99, 1L),
+                new Producto(3L, "Nike Air Max", 79.99, 1L)),
+                Map.of(2L, List.of(new Traduccion(NOMBRE, "fr", "Téléviseur Samsung"))));
     }
 
     /***
      * agregar un producto
+     * El nombre se guarda como canónico, así que se ve en todos los idiomas hasta que se traduzca.
+     * El Mono se completa cuando el alta ya está en el registro de cambios.
      *
      * @param producto
      * @return
      */
     public Mono<Producto> agregarProducto(Producto producto,Locale locale) {
-        producto.setId((long) (ProductosList(locale).size() + 1)); // Simulamos un ID autoincrementable
-        ProductosList(locale).add(producto);
-        return Mono.just(producto);
+        producto.setId(catalogo.secuencia.incrementAndGet());
+        producto.setVersion(1L);
+        return Mono.fromFuture(catalogo.guardar(producto, List.of())).thenReturn(producto);
     }
 
     /**
-     * listar todo los productos
+     * agregar un bloque de productos con una sola llamada
+     * Devuelve los productos creados en el mismo orden en que llegaron.
+     *
+     * @param productos
+     * @return
+     */
+    public Flux<Producto> agregarProductos(List<Producto> productos,Locale locale) {
+        // Se registran todos y se espera una sola vez: el bloque entero se sincroniza en el mismo grupo
+        CompletableFuture<?>[] escrituras = productos.stream().map(producto -> {
+            producto.setId(catalogo.secuencia.incrementAndGet());
+            producto.setVersion(1L);
+            return catalogo.guardar(producto, List.of());
+        }).toArray(CompletableFuture[]::new);
+        return Mono.fromFuture(CompletableFuture.allOf(escrituras)).thenMany(Flux.fromIterable(productos));
+    }
+
+    /**
+     * listar todo los productos, ordenados por id
+     * El Flux recorre el índice de forma perezosa, elemento a elemento según la demanda.
      *
      * @return
      */
     public Flux<Producto> listarProductos(Locale locale) {
-        return Flux.fromIterable(ProductosList(locale));
+        return listarProductos(locale, new FiltroProducto(), null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * listar una pagina de productos ordenados por id (paginación por cursor)
+     * Se parte del índice de ids después del cursor, así que el costo depende del tamaño
+     * de la página y no del total del catálogo. El rango de precio se evalúa sobre los productos recorridos.
+     * Cada producto se traduce al idioma a medida que se emite.
+     *
+     * @param filtro Filtros opcionales.
+     * @param cursor Último id de la página anterior, o null para empezar desde el principio.
+     * @param limite Número máximo de productos a devolver.
+     * @return
+     */
+    public Flux<Producto> listarProductos(Locale locale, FiltroProducto filtro, Long cursor, int limite) {
+        String idioma = Traducciones.idioma(locale);
+        return Flux.fromIterable(cursor == null ? catalogo.ids : catalogo.ids.tailSet(cursor, false))
+                .mapNotNull(catalogo.productos::get)
+                .filter(filtro::cumple)
+                .map(producto -> catalogo.enIdioma(producto, idioma))
+                .take(limite, true);
+    }
+
+    /**
+     * Buscar productos por nombre, ordenados por id (paginación por cursor).
+     * Cada palabra del texto debe estar en el nombre, sin importar acentos ni mayúsculas; la última
+     * basta con que sea el comienzo de una palabra, para autocompletar mientras se escribe.
+     * Se usa el índice invertido del catálogo, así que no se recorren todos los productos.
+     *
+     * @param texto  Texto buscado.
+     * @param cursor Último id de la página anterior, o null para empezar desde el principio.
+     * @param limite Número máximo de productos a devolver.
+     * @return
+     */
+    public Flux<Producto> buscarProductos(String texto, Locale locale, Long cursor, int limite) {
+        IndiceProductos.Consulta consulta = IndiceProductos.consulta(texto);
+        if (consulta == null) {
+            return Flux.empty();
+        }
+        String idioma = Traducciones.idioma(locale);
+        // El índice tiene los nombres de todos los idiomas y se actualiza después del mapa:
+        // se confirma cada candidato con su nombre vigente en el idioma de la solicitud
+        return Flux.fromIterable(catalogo.indice.candidatos(consulta, cursor))
+                .mapNotNull(catalogo.productos::get)
+                .map(producto -> catalogo.enIdioma(producto, idioma))
+                .filter(producto -> consulta.coincide(producto.getNombre()))
+                .take(limite, true);
     }
 
     /**
@@ -68,39 +141,257 @@ public class ProductoService {
      */
 
     public Mono<Producto> obtenerProductoPorId(Long id,Locale locale) {
-        return Mono.justOrEmpty(
-                ProductosList(locale).stream()
-                        .filter(p -> p.getId().equals(id))
-                        .findFirst()
-        );
+        return Mono.justOrEmpty(buscarProducto(id, locale));
+    }
+
+    /**
+     * Producto vigente en el idioma, o null si no existe. Es una lectura directa del mapa por id,
+     * que ya hace de índice id → precio: se reemplaza en el mismo compute de cada alta,
+     * actualización o baja. PedidoService lo usa para calcular el precio de cada pedido sin
+     * recorrer el catálogo.
+     *
+     * @param id
+     * @param locale
+     * @return
+     */
+    Producto buscarProducto(long id, Locale locale) {
+        Producto producto = catalogo.productos.get(id);
+        return producto != null ? catalogo.enIdioma(producto, Traducciones.idioma(locale)) : null;
     }
 
     /**
      * Metodo para actualizar el prodcuto
-     * Se utiliza Optional para manejar el caso en el que un producto no se encuentra.
+     * Si el producto no existe se devuelve un Mono vacío, que el controlador traduce a 404.
      *
      * @param producto
      * @return
      */
     public Mono<Producto> actualizarProducto(Producto producto,Locale locale) {
-        Mono<Producto> productoExistente = obtenerProductoPorId(producto.getId(),locale);
-        if (productoExistente.blockOptional().isPresent()) {
-            Mono<Producto> p = productoExistente;
-            p.block().setNombre(producto.getNombre());
-            p.block().setPrecio(producto.getPrecio());
-            return p;
-        } else {
-            return null;
+        return actualizarProducto(producto, locale, null);
+    }
+
+    /**
+     * Actualiza el producto solo si su versión guardada es la esperada (concurrencia optimista).
+     * El precio es el mismo en todos los idiomas; el nombre, en el idioma canónico reemplaza al
+     * canónico y en otro idioma se guarda como su traducción. La versión es la del producto, así
+     * que un cambio en cualquier idioma invalida los ETag de todos.
+     * El producto guardado nunca se modifica: se reemplaza por una copia con la versión siguiente.
+     * La comparación y el reemplazo son un solo paso atómico sobre la entrada del mapa.
+     *
+     * @param producto        Nuevos datos; el id indica qué producto actualizar.
+     * @param versionEsperada Versión que el cliente leyó, o null para actualizar sin condición.
+     * @return El producto actualizado, vacío si no existe, o un error {@link ConflictoVersionException}
+     *         si la versión guardada es otra.
+     */
+    public Mono<Producto> actualizarProducto(Producto producto, Locale locale, Long versionEsperada) {
+        String idioma = Traducciones.idioma(locale);
+        CompletableFuture<?>[] escritura = new CompletableFuture<?>[1];
+        long[] versionActual = {-1};
+        Producto[] anterior = new Producto[1];
+        List<Traduccion> traduccionesAnteriores = new ArrayList<>();
+        Producto actualizado = catalogo.productos.computeIfPresent(producto.getId(), (id, existente) -> {
+            if (versionEsperada != null && versionEsperada != existente.getVersion().longValue()) {
+                versionActual[0] = existente.getVersion();
+                return existente;
+            }
+            anterior[0] = existente;
+            traduccionesAnteriores.addAll(catalogo.traducciones.de(id));
+            List<Traduccion> traducciones = new ArrayList<>(traduccionesAnteriores);
+            Producto nuevo;
+            if (idioma.equals(Traducciones.IDIOMA_CANONICO)) {
+                nuevo = new Producto(id, producto.getNombre(), producto.getPrecio(), existente.getVersion() + 1);
+            } else {
+                nuevo = new Producto(id, existente.getNombre(), producto.getPrecio(), existente.getVersion() + 1);
+                Traducciones.poner(traducciones, NOMBRE, idioma, producto.getNombre(), existente.getNombre());
+            }
+            catalogo.indice.quitar(id, catalogo.nombres(existente, traduccionesAnteriores));
+            catalogo.indice.agregar(id, catalogo.nombres(nuevo, traducciones));
+            catalogo.traducciones.reemplazar(id, traducciones);
+            escritura[0] = registro.guardar(Catalogo.ALMACEN, id, CodificacionEntidades.producto(nuevo, traducciones));
+            return nuevo;
+        });
+        if (actualizado == null) {
+            return Mono.empty();
         }
+        if (escritura[0] == null) {
+            return Mono.error(new ConflictoVersionException(versionEsperada, versionActual[0]));
+        }
+        catalogo.modificado();
+        catalogo.deshacerSiFalla(escritura[0], actualizado.getId(), actualizado, anterior[0], traduccionesAnteriores);
+        return Mono.fromFuture(escritura[0]).thenReturn(catalogo.enIdioma(actualizado, idioma));
     }
 
     /**
      * METODO PARA ELIMINAR EL PRODUCTO
+     * Se elimina en todos los idiomas, junto con sus traducciones.
+     * El Mono se completa cuando la baja ya está en el registro de cambios.
      *
      * @param id
      */
-    public void eliminarProducto(Long id,Locale locale) {
-        ProductosList(locale).removeIf(p -> p.getId().equals(id));
+    public Mono<Void> eliminarProducto(Long id,Locale locale) {
+        return Mono.fromFuture(catalogo.eliminar(id)).then();
     }
-}
 
+    /**
+     * Versión actual del catálogo. Cambia con cada alta, actualización o baja en cualquier idioma,
+     * así que sirve para responder solicitudes condicionales sin leer los productos.
+     *
+     * @return
+     */
+    public RevisionCatalogo revision() {
+        return catalogo.revision.get();
+    }
+
+    /**
+     * Número de productos guardados en el catálogo (se publica como métrica).
+     *
+     * @return
+     */
+    public int contarProductos() {
+        return catalogo.productos.size();
+    }
+
+    /**
+     * Productos indexados por id, con una secuencia de ids, un índice ordenado de ids para la
+     * paginación por cursor y un índice invertido de los nombres (en todos los idiomas) para las
+     * búsquedas. Los nombres en otros idiomas están en la tabla de traducciones y se aplican al
+     * leer. Cada cambio avanza la revisión del catálogo.
+     * Los productos del mapa no se modifican: cada cambio reemplaza la entrada por otra instancia.
+     * Los cambios, y las traducciones del producto, se registran dentro de compute/computeIfPresent,
+     * así que para un mismo id el orden del registro es el mismo que el del mapa.
+     * Es seguro leer y escribir desde varios hilos a la vez.
+     */
+    private final class Catalogo {
+        private static final String ALMACEN = "productos";
+
+        private final ConcurrentMap<Long, Producto> productos;
+        private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+        private final Traducciones traducciones = new Traducciones(NOMBRE);
+        private final IndiceProductos indice = new IndiceProductos();
+        private final AtomicLong secuencia = new AtomicLong();
+        private final AtomicReference<RevisionCatalogo> revision = new AtomicReference<>(RevisionCatalogo.inicial());
+
+        private Catalogo(List<Producto> semilla, Map<Long, List<Traduccion>> traduccionesSemilla) {
+            if (registro.vacio()) {
+                this.productos = new ConcurrentHashMap<>();
+                for (Producto producto : semilla) {
+                    guardar(producto, traduccionesSemilla.getOrDefault(producto.getId(), List.of()));
+                    secuencia.accumulateAndGet(producto.getId(), Math::max);
+                }
+                return;
+            }
+            EstadoAlmacen estado = registro.recuperar(ALMACEN);
+            this.productos = new ConcurrentHashMap<>(estado.entidades().size());
+            estado.entidades().forEach((id, datos) -> {
+                CodificacionEntidades.Guardado<Producto> guardado = CodificacionEntidades.producto(id, datos);
+                productos.put(id, guardado.entidad());
+                ids.add(id);
+                traducciones.reemplazar(id, guardado.traducciones());
+                indice.agregar(id, nombres(guardado.entidad(), guardado.traducciones()));
+            });
+            secuencia.set(estado.ultimoId());
+        }
+
+        /**
+         * El producto como se ve en el idioma. Si no tiene traducción es la misma instancia, que no se modifica.
+         */
+        private Producto enIdioma(Producto producto, String idioma) {
+            String nombre = traducciones.traducir(producto.getId(), NOMBRE, idioma, producto.getNombre());
+            return nombre.equals(producto.getNombre()) ? producto
+                    : new Producto(producto.getId(), nombre, producto.getPrecio(), producto.getVersion());
+        }
+
+        private List<String> nombres(Producto producto, List<Traduccion> traducciones) {
+            return Traducciones.variantes(traducciones, NOMBRE, producto.getNombre());
+        }
+
+        private CompletableFuture<?> guardar(Producto producto, List<Traduccion> traduccionesProducto) {
+            CompletableFuture<?>[] escritura = new CompletableFuture<?>[1];
+            Producto[] reemplazado = new Producto[1];
+            List<Traduccion> traduccionesAnteriores = new ArrayList<>();
+            productos.compute(producto.getId(), (id, anterior) -> {
+                reemplazado[0] = anterior;
+                traduccionesAnteriores.addAll(traducciones.de(id));
+                traducciones.reemplazar(id, traduccionesProducto);
+                escritura[0] = registro.guardar(ALMACEN, id, CodificacionEntidades.producto(producto, traduccionesProducto));
+                return producto;
+            });
+            ids.add(producto.getId());
+            if (reemplazado[0] != null) {
+                indice.quitar(producto.getId(), nombres(reemplazado[0], traduccionesAnteriores));
+            }
+            indice.agregar(producto.getId(), nombres(producto, traduccionesProducto));
+            modificado();
+            return deshacerSiFalla(escritura[0], producto.getId(), producto, reemplazado[0], traduccionesAnteriores);
+        }
+
+        private CompletableFuture<?> eliminar(Long id) {
+            CompletableFuture<?>[] escritura = new CompletableFuture<?>[1];
+            Producto[] eliminado = new Producto[1];
+            List<Traduccion> traduccionesEliminado = new ArrayList<>();
+            productos.computeIfPresent(id, (clave, existente) -> {
+                escritura[0] = registro.eliminar(ALMACEN, clave);
+                eliminado[0] = existente;
+                traduccionesEliminado.addAll(traducciones.de(clave));
+                traducciones.reemplazar(clave, List.of());
+                return null;
+            });
+            if (escritura[0] == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            ids.remove(id);
+            indice.quitar(id, nombres(eliminado[0], traduccionesEliminado));
+            modificado();
+            return deshacerSiFalla(escritura[0], id, null, eliminado[0], traduccionesEliminado);
+        }
+
+        /**
+         * Si el cambio no llega al registro, devuelve el producto al estado anterior, a menos que otro
+         * cambio ya lo haya reemplazado. Se registra después de tocar el mapa y los índices: un futuro
+         * que ya falló ejecuta la reversión en el acto.
+         *
+         * @param escrito  Producto que dejó el cambio, o null si fue una baja.
+         * @param anterior Producto antes del cambio, o null si fue un alta.
+         */
+        private CompletableFuture<?> deshacerSiFalla(CompletableFuture<?> escritura, long id, Producto escrito,
+                                                     Producto anterior, List<Traduccion> traduccionesAnteriores) {
+            escritura.whenComplete((listo, error) -> {
+                if (error != null) {
+                    deshacer(id, escrito, anterior, traduccionesAnteriores);
+                }
+            });
+            return escritura;
+        }
+
+        private void deshacer(long id, Producto escrito, Producto anterior, List<Traduccion> traduccionesAnteriores) {
+            boolean[] deshecho = {false};
+            productos.compute(id, (clave, actual) -> {
+                if (actual != escrito) {
+                    return actual;
+                }
+                if (escrito != null) {
+                    indice.quitar(clave, nombres(escrito, traducciones.de(clave)));
+                }
+                traducciones.reemplazar(clave, traduccionesAnteriores);
+                if (anterior != null) {
+                    indice.agregar(clave, nombres(anterior, traduccionesAnteriores));
+                }
+                deshecho[0] = true;
+                return anterior;
+            });
+            if (!deshecho[0]) {
+                return;
+            }
+            if (anterior != null) {
+                ids.add(id);
+            } else {
+                ids.remove(id);
+            }
+            modificado();
+        }
+
+        private void modificado() {
+            revision.updateAndGet(RevisionCatalogo::siguiente);
+        }
+    }
+}
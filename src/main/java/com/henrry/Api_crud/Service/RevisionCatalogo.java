@@ -0,0 +1,31 @@
+package com.henrry.Api_crud.Service;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Versión de un catálogo: un número que crece con cada cambio y el momento del último cambio.
+ * Se reemplaza completa en cada modificación, así que el número y la fecha siempre van juntos.
+ * <p>
+ * El número no se guarda y vuelve a empezar en cada arranque, y cada instancia cuenta los suyos:
+ * por eso va acompañado de una época aleatoria del catálogo en memoria. El mismo número de otro
+ * arranque u otra instancia tiene otra época, así que no se confunde con este.
+ *
+ * @param epoca      Identifica el catálogo en memoria en que vale el número (uno por arranque e instancia).
+ * @param numero     Número de versión; dos lecturas con la misma época y número devuelven los mismos datos.
+ * @param modificado Momento del último cambio, truncado a segundos como el encabezado 'Last-Modified'.
+ */
+public record RevisionCatalogo(String epoca, long numero, Instant modificado) {
+
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    static RevisionCatalogo inicial() {
+        return new RevisionCatalogo(Long.toString(ALEATORIO.nextLong() & Long.MAX_VALUE, 36), 1,
+                Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    RevisionCatalogo siguiente() {
+        return new RevisionCatalogo(epoca, numero + 1, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+}
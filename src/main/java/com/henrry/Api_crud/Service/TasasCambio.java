@@ -0,0 +1,63 @@
+package com.henrry.Api_crud.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabla inmutable de tasas de cambio respecto al euro, indexada por idioma.
+ * Se reemplaza completa cuando cambian las tasas, nunca se modifica.
+ */
+public final class TasasCambio {
+
+    /**
+     * Decimales con los que se devuelven los precios convertidos.
+     */
+    static final int DECIMALES = 2;
+
+    private final Map<String, BigDecimal> tasasPorIdioma;
+
+    public TasasCambio(Map<String, BigDecimal> tasasPorIdioma) {
+        Map<String, BigDecimal> normalizadas = new HashMap<>();
+        // Sin ceros a la derecha, para que 1.18 y 1.180 se consideren la misma tasa
+        tasasPorIdioma.forEach((idioma, tasa) -> normalizadas.put(idioma, tasa.stripTrailingZeros()));
+        this.tasasPorIdioma = Map.copyOf(normalizadas);
+    }
+
+    /**
+     * Tasa del idioma, o 1 (euros, sin conversión) si el idioma no tiene tasa.
+     */
+    public BigDecimal tasa(String idioma) {
+        return tasasPorIdioma.getOrDefault(idioma, BigDecimal.ONE);
+    }
+
+    /**
+     * Convierte un precio en euros a la moneda del idioma, redondeando al céntimo (HALF_EVEN).
+     */
+    public BigDecimal convertir(BigDecimal precioBase, String idioma) {
+        return precioBase.multiply(tasa(idioma)).setScale(DECIMALES, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Convierte un precio en la moneda del idioma de vuelta a euros, sin perder precisión significativa.
+     */
+    public BigDecimal aEuros(BigDecimal precio, String idioma) {
+        return precio.divide(tasa(idioma), 10, RoundingMode.HALF_EVEN).stripTrailingZeros();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TasasCambio otras && tasasPorIdioma.equals(otras.tasasPorIdioma);
+    }
+
+    @Override
+    public int hashCode() {
+        return tasasPorIdioma.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TasasCambio" + tasasPorIdioma;
+    }
+}
@@ -0,0 +1,9 @@
+package com.henrry.Api_crud.Service;
+
+/**
+ * Evento que se publica cuando se cargan tasas de cambio distintas de las anteriores.
+ *
+ * @param tasas La nueva tabla de tasas.
+ */
+public record TasasCambioActualizadas(TasasCambio tasas) {
+}
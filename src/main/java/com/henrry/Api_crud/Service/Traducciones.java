@@ -0,0 +1,135 @@
+package com.henrry.Api_crud.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tabla de traducciones de los textos de las entidades: (id, campo, idioma) → texto.
+ * Cada entidad se guarda una sola vez con sus textos en el idioma canónico; aquí solo están los
+ * textos que cambian en otro idioma, así que un idioma más cuesta lo que ocupan sus traducciones.
+ * Los textos se internan, de modo que un texto repetido en muchas entidades ocupa memoria una vez.
+ * <p>
+ * Las traducciones de una entidad se reemplazan todas juntas dentro del compute de esa entidad,
+ * igual que los índices de los servicios.
+ */
+final class Traducciones {
+
+    /**
+     * Idioma de los textos guardados en las entidades; también es el que se usa para los idiomas sin traducciones.
+     */
+    static final String IDIOMA_CANONICO = "en";
+
+    /**
+     * Idiomas que pueden tener traducciones.
+     */
+    static final List<String> IDIOMAS = List.of("es", "fr", IDIOMA_CANONICO);
+
+    private final List<String> campos;
+    private final ConcurrentMap<Clave, String> textos = new ConcurrentHashMap<>();
+
+    /**
+     * @param campos Campos traducibles de la entidad.
+     */
+    Traducciones(String... campos) {
+        this.campos = List.of(campos);
+    }
+
+    /**
+     * Idioma del locale si tiene traducciones propias, o el canónico si no.
+     */
+    static String idioma(Locale locale) {
+        String idioma = locale.getLanguage();
+        return IDIOMAS.contains(idioma) ? idioma : IDIOMA_CANONICO;
+    }
+
+    /**
+     * Texto del campo en el idioma, o el canónico si no tiene traducción.
+     */
+    String traducir(long id, String campo, String idioma, String canonico) {
+        if (idioma.equals(IDIOMA_CANONICO)) {
+            return canonico;
+        }
+        String texto = textos.get(new Clave(id, campo, idioma));
+        return texto != null ? texto : canonico;
+    }
+
+    /**
+     * Traducciones actuales de la entidad.
+     */
+    List<Traduccion> de(long id) {
+        List<Traduccion> traducciones = new ArrayList<>();
+        for (String campo : campos) {
+            for (String idioma : IDIOMAS) {
+                String texto = idioma.equals(IDIOMA_CANONICO) ? null : textos.get(new Clave(id, campo, idioma));
+                if (texto != null) {
+                    traducciones.add(new Traduccion(campo, idioma, texto));
+                }
+            }
+        }
+        return traducciones;
+    }
+
+    /**
+     * Deja a la entidad exactamente con estas traducciones (sin ninguna si la lista está vacía).
+     */
+    void reemplazar(long id, List<Traduccion> traducciones) {
+        for (String campo : campos) {
+            for (String idioma : IDIOMAS) {
+                String texto = texto(traducciones, campo, idioma, null);
+                if (texto == null) {
+                    textos.remove(new Clave(id, campo, idioma));
+                } else {
+                    textos.put(new Clave(id, campo, idioma), texto.intern());
+                }
+            }
+        }
+    }
+
+    /**
+     * Texto del campo en el idioma según una lista de traducciones, o el canónico si no está.
+     */
+    static String texto(List<Traduccion> traducciones, String campo, String idioma, String canonico) {
+        for (Traduccion traduccion : traducciones) {
+            if (traduccion.campo().equals(campo) && traduccion.idioma().equals(idioma)) {
+                return traduccion.texto();
+            }
+        }
+        return canonico;
+    }
+
+    /**
+     * Cambia en la lista el texto del campo en un idioma que no es el canónico. Si coincide con el
+     * canónico no hace falta guardarlo, así que se quita.
+     */
+    static void poner(List<Traduccion> traducciones, String campo, String idioma, String texto, String canonico) {
+        traducciones.removeIf(traduccion -> traduccion.campo().equals(campo) && traduccion.idioma().equals(idioma));
+        if (texto != null && !texto.equals(canonico)) {
+            traducciones.add(new Traduccion(campo, idioma, texto));
+        }
+    }
+
+    /**
+     * Textos distintos del campo: el canónico y sus traducciones. Es lo que se indexa para buscar en cualquier idioma.
+     */
+    static List<String> variantes(List<Traduccion> traducciones, String campo, String canonico) {
+        List<String> variantes = new ArrayList<>();
+        if (canonico != null) {
+            variantes.add(canonico);
+        }
+        for (Traduccion traduccion : traducciones) {
+            if (traduccion.campo().equals(campo) && !variantes.contains(traduccion.texto())) {
+                variantes.add(traduccion.texto());
+            }
+        }
+        return variantes;
+    }
+
+    record Traduccion(String campo, String idioma, String texto) {
+    }
+
+    private record Clave(long id, String campo, String idioma) {
+    }
+}
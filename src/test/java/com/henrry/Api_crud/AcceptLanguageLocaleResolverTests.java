@@ -0,0 +1,34 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Config.AcceptLanguageLocaleResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AcceptLanguageLocaleResolverTests {
+
+	private final AcceptLanguageLocaleResolver resolver =
+			new AcceptLanguageLocaleResolver(new String[]{"es", "en", "fr"}, Locale.ENGLISH, 16);
+
+	@Test
+	void respetaLosPesosQ() {
+		assertEquals("es", resolver.resolver("fr;q=0.1,es").getLanguage());
+		assertEquals("en", resolver.resolver("fr;q=0.3, en-US;q=0.8, es;q=0.5").getLanguage());
+	}
+
+	@Test
+	void usaLaSubetiquetaPrincipal() {
+		assertEquals("es", resolver.resolver("es-ES,es;q=0.8,en-US;q=0.5,en;q=0.3").getLanguage());
+		assertEquals("fr", resolver.resolver("FR-ch").getLanguage());
+	}
+
+	@Test
+	void idiomasNoSoportadosOPesoCeroUsanElPorDefecto() {
+		assertEquals(Locale.ENGLISH, resolver.resolver("de-DE,it;q=0.9"));
+		assertEquals(Locale.ENGLISH, resolver.resolver("es;q=0"));
+		assertEquals(Locale.ENGLISH, resolver.resolver(null));
+		assertEquals("fr", resolver.resolver("de, fr;q=0.2, *;q=0.1").getLanguage());
+	}
+}
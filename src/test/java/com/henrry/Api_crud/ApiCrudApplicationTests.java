@@ -1,6 +1,8 @@
 package com.henrry.Api_crud;
 
+import com.henrry.Api_crud.Models.Pedido;
 import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Service.PedidoService;
 import com.henrry.Api_crud.Service.ProductoService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +18,9 @@ class ApiCrudApplicationTests {
 	@Autowired
 	private ProductoService productoService;
 
+	@Autowired
+	private PedidoService pedidoService;
+
 
 	@Test
 	void testListarTotalProductos() {
@@ -35,4 +40,21 @@ class ApiCrudApplicationTests {
 				.verifyComplete();
 	}
 
+	@Test
+	void testListarNoDuplicaProductos() {
+		productoService.listarProductos(Locale.ENGLISH).blockLast();
+		StepVerifier.create(productoService.listarProductos(Locale.ENGLISH))
+				.expectNextCount(3) // Listar varias veces no debe volver a cargar los datos iniciales
+				.verifyComplete();
+	}
+
+	@Test
+	void testAgregarPedidoSeConserva() {
+		Pedido creado = pedidoService.agregarPedido(new Pedido(null, "Cliente 4", "Producto 4", 1, 10.0), Locale.ENGLISH).block();
+		StepVerifier.create(pedidoService.obtenerPedidoPorId(creado.getId(), Locale.ENGLISH))
+				.expectNextMatches(p -> p.getCliente().equals("Cliente 4"))
+				.verifyComplete();
+		pedidoService.eliminarPedido(creado.getId(), Locale.ENGLISH);
+	}
+
 }
@@ -0,0 +1,78 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Service.ProductoService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BusquedaProductosTests {
+
+	private final ProductoService productoService = new ProductoService(RegistroCambios.ninguno());
+
+	@Test
+	void buscaSinAcentosYConLaUltimaPalabraIncompleta() {
+		assertEquals(List.of("Téléviseur Samsung"), buscar("televiseur", Locale.FRENCH));
+		assertEquals(List.of("Téléviseur Samsung"), buscar("TÉLÉVISEUR sam", Locale.FRENCH));
+		assertEquals(List.of(), buscar("tele nike", Locale.FRENCH));
+		assertEquals(List.of(), buscar("sam tele", Locale.FRENCH));
+		assertEquals(List.of(), buscar("  ", Locale.FRENCH));
+	}
+
+	@Test
+	void elIndiceSigueLasAltasCambiosYBajas() {
+		Producto nuevo = productoService.agregarProducto(new Producto(null, "Nike Air Force", 99.0), Locale.ENGLISH).block();
+		assertEquals(List.of("Nike Air Max", "Nike Air Force"), buscar("nike air", Locale.ENGLISH));
+
+		productoService.actualizarProducto(new Producto(3L, "Adidas Samba", 79.99), Locale.ENGLISH).block();
+		assertEquals(List.of("Nike Air Force"), buscar("nike", Locale.ENGLISH));
+		assertEquals(List.of("Samsung TV", "Adidas Samba"), buscar("sam", Locale.ENGLISH));
+
+		productoService.eliminarProducto(nuevo.getId(), Locale.ENGLISH).block();
+		assertEquals(List.of(), buscar("nike", Locale.ENGLISH));
+	}
+
+	@Test
+	void paginaPorCursorEnOrdenDeId() {
+		for (int i = 0; i < 20; i++) {
+			productoService.agregarProducto(new Producto(null, "Cable " + (i % 2 == 0 ? "USB" : "HDMI") + " " + i, 5.0), Locale.ENGLISH).block();
+		}
+		List<Long> primera = ids("cable", null, 7);
+		List<Long> segunda = ids("cable", primera.get(6), 7);
+		assertEquals(List.of(4L, 5L, 6L, 7L, 8L, 9L, 10L), primera);
+		assertEquals(List.of(11L, 12L, 13L, 14L, 15L, 16L, 17L), segunda);
+		assertEquals(List.of(4L, 6L, 8L), ids("cable usb", null, 3));
+		// El prefijo "1" abarca varias palabras ("1", "10", "11", ...): se unen sin repetir y en orden
+		assertEquals(List.of(5L, 14L, 15L, 16L, 17L), ids("cable 1", null, 5));
+	}
+
+	@Test
+	void unPrefijoCortoOConMuchasPalabrasUsaLaListaDeLaInicial() {
+		// "Pieza 10000" ... "Pieza 10299", con ids del 4 al 303: el prefijo "10" abarca 300 palabras
+		for (int i = 0; i < 300; i++) {
+			productoService.agregarProducto(new Producto(null, "Pieza " + (10000 + i), 1.0), Locale.ENGLISH).block();
+		}
+		// "iPhone 14" (id 1) empieza por "1" pero no por "10"
+		assertEquals(List.of(1L, 4L), ids("1", null, 2));
+		assertEquals(List.of(4L, 5L, 6L), ids("10", null, 3));
+		assertEquals(List.of(204L, 205L), ids("102", null, 2));
+		assertEquals(List.of(301L, 302L, 303L), ids("pieza 10", 300L, 5));
+		assertEquals(List.of(), ids("pieza 2", null, 3));
+
+		productoService.eliminarProducto(4L, Locale.ENGLISH).block();
+		assertEquals(List.of(1L, 5L), ids("1", null, 2));
+		assertEquals(List.of(5L), ids("10", null, 1));
+	}
+
+	private List<String> buscar(String texto, Locale locale) {
+		return productoService.buscarProductos(texto, locale, null, 100).map(Producto::getNombre).collectList().block();
+	}
+
+	private List<Long> ids(String texto, Long cursor, int limite) {
+		return productoService.buscarProductos(texto, Locale.ENGLISH, cursor, limite).map(Producto::getId).collectList().block();
+	}
+}
@@ -0,0 +1,63 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Config.CachingReactiveAuthenticationManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingReactiveAuthenticationManagerTests {
+
+	private final AtomicInteger verificaciones = new AtomicInteger();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final CachingReactiveAuthenticationManager manager = new CachingReactiveAuthenticationManager(
+			auth -> {
+				verificaciones.incrementAndGet();
+				return "admin123".equals(auth.getCredentials())
+						? Mono.just(UsernamePasswordAuthenticationToken.authenticated(auth.getName(), null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")))
+						: Mono.error(new BadCredentialsException("Credenciales incorrectas"));
+			},
+			Duration.ofMinutes(5), 100, registry);
+
+	@Test
+	void segundaAutenticacionNoVuelveAVerificar() {
+		StepVerifier.create(manager.authenticate(credenciales("admin123"))).expectNextCount(1).verifyComplete();
+		StepVerifier.create(manager.authenticate(credenciales("admin123"))).expectNextCount(1).verifyComplete();
+
+		assertEquals(1, verificaciones.get());
+		assertEquals(1, manager.estadisticas().hitCount());
+		assertEquals(1, manager.estadisticas().missCount());
+		assertEquals(1.0, registry.get("cache.gets").tag("cache", "autenticacion").tag("result", "hit").functionCounter().count());
+	}
+
+	@Test
+	void credencialesIncorrectasNoSeCachean() {
+		StepVerifier.create(manager.authenticate(credenciales("otra"))).expectError(BadCredentialsException.class).verify();
+		StepVerifier.create(manager.authenticate(credenciales("otra"))).expectError(BadCredentialsException.class).verify();
+
+		assertEquals(2, verificaciones.get());
+	}
+
+	@Test
+	void invalidarObligaAVerificarDeNuevo() {
+		manager.authenticate(credenciales("admin123")).block();
+		manager.invalidar("admin");
+		manager.authenticate(credenciales("admin123")).block();
+
+		assertEquals(2, verificaciones.get());
+	}
+
+	private static UsernamePasswordAuthenticationToken credenciales(String password) {
+		return UsernamePasswordAuthenticationToken.unauthenticated("admin", password);
+	}
+}
@@ -0,0 +1,83 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import com.henrry.Api_crud.Service.TasasCambioActualizadas;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionMonedaServiceTests {
+
+	@TempDir
+	Path directorio;
+
+	private final List<Object> eventos = new ArrayList<>();
+
+	@Test
+	void convierteSegunElIdiomaSinImportarLaRegion() throws IOException {
+		ConversionMonedaService servicio = servicio("es=1\nen=1.18\nfr=1.08\n");
+
+		assertEquals(99.99, servicio.calcularPrecioPorIdioma(new BigDecimal("99.99"), Locale.forLanguageTag("es-ES")));
+		assertEquals(117.99, servicio.calcularPrecioPorIdioma(new BigDecimal("99.99"), Locale.forLanguageTag("en-US")));
+		assertEquals(107.99, servicio.calcularPrecioPorIdioma(new BigDecimal("99.99"), Locale.FRENCH));
+		assertEquals(10.0, servicio.calcularPrecioPorIdioma(BigDecimal.TEN, Locale.GERMAN));
+	}
+
+	@Test
+	void recargaLasTasasYAvisaSoloSiCambian() throws IOException {
+		ConversionMonedaService servicio = servicio("en=1.18\n");
+
+		Files.writeString(directorio.resolve("tasas.properties"), "en=1.180\n");
+		servicio.recargar();
+		assertTrue(eventos.isEmpty());
+
+		Files.writeString(directorio.resolve("tasas.properties"), "en=1.25\n");
+		servicio.recargar();
+		assertEquals(1, eventos.size());
+		assertEquals(12.5, servicio.calcularPrecioPorIdioma(BigDecimal.TEN, Locale.ENGLISH));
+	}
+
+	@Test
+	void losPedidosSeReconviertenCuandoCambianLasTasas() throws IOException {
+		ConversionMonedaService servicio = servicio("es=1\nen=1.18\nfr=1.08\n");
+		PedidoService pedidos = new PedidoService(servicio, new ProductoService(RegistroCambios.ninguno()), RegistroCambios.ninguno());
+		assertEquals(117.99, pedidos.obtenerPedidoPorId(1L, Locale.ENGLISH).block().getPrecioTotal());
+
+		Files.writeString(directorio.resolve("tasas.properties"), "es=1\nen=1.25\nfr=1.08\n");
+		servicio.recargar();
+		eventos.forEach(evento -> pedidos.tasasActualizadas((TasasCambioActualizadas) evento));
+
+		assertEquals(124.99, pedidos.obtenerPedidoPorId(1L, Locale.ENGLISH).block().getPrecioTotal());
+		assertEquals(99.99, pedidos.obtenerPedidoPorId(1L, Locale.forLanguageTag("es")).block().getPrecioTotal());
+	}
+
+	@Test
+	void unArchivoInvalidoConservaLasTasasAnteriores() throws IOException {
+		ConversionMonedaService servicio = servicio("en=1.18\n");
+
+		Files.writeString(directorio.resolve("tasas.properties"), "en=abc\n");
+		servicio.recargar();
+
+		assertEquals(11.8, servicio.calcularPrecioPorIdioma(BigDecimal.TEN, Locale.ENGLISH));
+		assertTrue(eventos.stream().noneMatch(TasasCambioActualizadas.class::isInstance));
+	}
+
+	private ConversionMonedaService servicio(String contenido) throws IOException {
+		Path archivo = Files.writeString(directorio.resolve("tasas.properties"), contenido);
+		return new ConversionMonedaService(new FileSystemResource(archivo), eventos::add);
+	}
+}
@@ -0,0 +1,449 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Controllers.Idempotencia;
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Models.ResultadoLote;
+import com.henrry.Api_crud.Models.TokenAcceso;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de extremo a extremo sobre el servidor Netty, pasando por la cadena de seguridad.
+ * BlockHound está activo, así que cualquier bloqueo en el event loop hace fallar la solicitud.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+class EndpointsTests {
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@Test
+	void saludoEsPublicoYLocalizado() {
+		webTestClient.get().uri("/public/api/saludo")
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class).isEqualTo("Hola, bienvenido a nuestra API Reactiva!");
+	}
+
+	@Test
+	void listarProductosRequiereAutenticacion() {
+		webTestClient.get().uri("/api/productos")
+				.exchange()
+				.expectStatus().is3xxRedirection();
+
+		webTestClient.get().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(Producto.class).hasSize(3);
+	}
+
+	@Test
+	void actualizarProductoInexistenteDevuelve404() {
+		webTestClient.put().uri("/api/productos/999")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.bodyValue(new Producto(null, "No existe", 1.0))
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	void tokenDeAccesoPermiteSolicitudesSinSesion() {
+		TokenAcceso token = webTestClient.post().uri("/api/auth/token")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(TokenAcceso.class)
+				.returnResult().getResponseBody();
+
+		webTestClient.get().uri("/api/pedidos")
+				.headers(h -> h.setBearerAuth(token.getToken()))
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().doesNotExist(HttpHeaders.SET_COOKIE)
+				.expectBodyList(Pedido.class).hasSize(3);
+
+		webTestClient.get().uri("/api/pedidos")
+				.headers(h -> h.setBearerAuth(token.getToken() + "x"))
+				.exchange()
+				.expectStatus().isUnauthorized();
+	}
+
+	@Test
+	void unTokenDeAccesoNoSirveParaPedirOtro() {
+		TokenAcceso token = webTestClient.post().uri("/api/auth/token")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(TokenAcceso.class)
+				.returnResult().getResponseBody();
+
+		webTestClient.post().uri("/api/auth/token")
+				.headers(h -> h.setBearerAuth(token.getToken()))
+				.exchange()
+				.expectStatus().isForbidden()
+				.expectBody().isEmpty();
+	}
+
+	@Test
+	void listarPedidosEnNdjson() {
+		webTestClient.get().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(Pedido.class)
+				.getResponseBody()
+				.as(StepVerifier::create)
+				.expectNextCount(3)
+				.verifyComplete();
+	}
+
+	@Test
+	void listarPedidosPaginadoPorCursorYFiltrado() {
+		webTestClient.get().uri("/api/pedidos?limit=2")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals("X-Siguiente-Cursor", "2")
+				.expectBodyList(Pedido.class).hasSize(2);
+
+		webTestClient.get().uri("/api/pedidos?limit=2&cursor=2")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().doesNotExist("X-Siguiente-Cursor")
+				.expectBodyList(Pedido.class).hasSize(1);
+
+		webTestClient.get().uri("/api/pedidos?cliente=Cliente 2&cantidadMax=1")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(Pedido.class)
+				.value(pedidos -> assertEquals(2L, pedidos.get(0).getId()))
+				.hasSize(1);
+	}
+
+	@Test
+	void actualizarConIfMatchRechazaVersionesViejas() {
+		String etag = webTestClient.get().uri("/api/pedidos/3")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.exchange()
+				.expectStatus().isOk()
+				.returnResult(Pedido.class).getResponseHeaders().getETag();
+
+		webTestClient.put().uri("/api/pedidos/3")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.header(HttpHeaders.IF_MATCH, etag)
+				.bodyValue(new Pedido(null, "Client 3", "Produit 3", 5, 49.99))
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals(HttpHeaders.ETAG, "\"fr-v2\"");
+
+		// Otra escritura con la versión que ya no es la vigente no pisa la anterior
+		webTestClient.put().uri("/api/pedidos/3")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.header(HttpHeaders.IF_MATCH, etag)
+				.bodyValue(new Pedido(null, "Autre client", "Produit 3", 1, 49.99))
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED)
+				.expectHeader().valueEquals(HttpHeaders.ETAG, "\"fr-v2\"");
+
+		webTestClient.get().uri("/api/pedidos/3")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Pedido.class).value(pedido -> {
+					assertEquals("Client 3", pedido.getCliente());
+					assertEquals(5, pedido.getCantidad());
+					assertEquals(2L, pedido.getVersion());
+				});
+	}
+
+	@Test
+	void buscarProductosPorNombre() {
+		webTestClient.get().uri("/api/productos/search?q=televiseur sam")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(Producto.class)
+				.value(productos -> assertEquals(2L, productos.get(0).getId()))
+				.hasSize(1);
+	}
+
+	@Test
+	void elPrecioDeUnPedidoSaleDelCatalogo() {
+		Pedido pedido = new Pedido(null, "Cliente 9", "Otro nombre", 3, 1.0);
+		pedido.setProductoId(3L);
+		Pedido creado = webTestClient.post().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.bodyValue(pedido)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Pedido.class).returnResult().getResponseBody();
+		assertEquals("Nike Air Max", creado.getProducto());
+		assertEquals(239.97, creado.getPrecioTotal());
+
+		// El precio del catálogo no depende del idioma de la solicitud: en euros es el mismo
+		Pedido enIngles = webTestClient.post().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "en")
+				.bodyValue(pedido)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Pedido.class).returnResult().getResponseBody();
+		webTestClient.get().uri("/api/pedidos/" + enIngles.getId())
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Pedido.class).value(leido -> assertEquals(239.97, leido.getPrecioTotal()));
+
+		pedido.setProductoId(999L);
+		webTestClient.post().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.bodyValue(pedido)
+				.exchange()
+				.expectStatus().isBadRequest();
+
+		// Los pedidos se ven en todos los idiomas: se eliminan para no cambiar los listados de las demás pruebas
+		for (Pedido creadoEn : List.of(creado, enIngles)) {
+			webTestClient.delete().uri("/api/pedidos/" + creadoEn.getId())
+					.headers(h -> h.setBasicAuth("admin", "admin123"))
+					.exchange()
+					.expectStatus().isNoContent();
+		}
+	}
+
+	@Test
+	void unReintentoConLaMismaLlaveNoCreaOtroPedido() {
+		Pedido pedido = new Pedido(null, "Cliente 10", "Producto 10", 1, 5.0);
+		Pedido creado = webTestClient.post().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(Idempotencia.ENCABEZADO, "reintento-1")
+				.bodyValue(pedido)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Pedido.class).returnResult().getResponseBody();
+
+		webTestClient.post().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(Idempotencia.ENCABEZADO, "reintento-1")
+				.bodyValue(pedido)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectHeader().valueEquals(Idempotencia.REPETIDA, "true")
+				.expectBody(Pedido.class).value(repetido -> assertEquals(creado.getId(), repetido.getId()));
+
+		pedido.setCantidad(2);
+		webTestClient.post().uri("/api/pedidos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(Idempotencia.ENCABEZADO, "reintento-1")
+				.bodyValue(pedido)
+				.exchange()
+				.expectStatus().isEqualTo(422);
+
+		webTestClient.delete().uri("/api/pedidos/" + creado.getId())
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.exchange()
+				.expectStatus().isNoContent();
+	}
+
+	@Test
+	void operacionesEnLote() {
+		String ndjson = "{\"cliente\":\"Lote\",\"producto\":\"A\",\"cantidad\":1,\"precioTotal\":1.0}\n"
+				+ "{\"cliente\":\"Lote\",\"producto\":\"B\",\"cantidad\":2,\"precioTotal\":2.0}\n";
+		List<ResultadoLote> creados = webTestClient.post().uri("/api/pedidos/lote")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.bodyValue(ndjson)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(ResultadoLote.class).hasSize(2)
+				.returnResult().getResponseBody();
+		assertEquals(201, creados.get(1).getEstado());
+		assertEquals(1, creados.get(1).getIndice());
+
+		webTestClient.put().uri("/api/pedidos/lote")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.bodyValue(List.of(new Pedido(creados.get(0).getId(), "Lote", "C", 3, 3.0), new Pedido(999L, "x", "x", 1, 1.0)))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(ResultadoLote.class)
+				.value(resultados -> {
+					assertEquals(200, resultados.get(0).getEstado());
+					assertEquals(404, resultados.get(1).getEstado());
+				});
+
+		webTestClient.method(HttpMethod.DELETE).uri("/api/pedidos/lote")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.bodyValue(creados.stream().map(ResultadoLote::getId).toList())
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(ResultadoLote.class).hasSize(2);
+	}
+
+	@Test
+	void unProductoInexistenteSoloRechazaSuPedidoDelLote() {
+		String ndjson = "{\"cliente\":\"Lote\",\"productoId\":3,\"cantidad\":1}\n"
+				+ "{\"cliente\":\"Lote\",\"productoId\":999999,\"cantidad\":1}\n"
+				+ "{\"cliente\":\"Lote\",\"producto\":\"B\",\"cantidad\":2,\"precioTotal\":2.0}\n";
+		List<ResultadoLote> resultados = webTestClient.post().uri("/api/pedidos/lote")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.bodyValue(ndjson)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(ResultadoLote.class).hasSize(3)
+				.returnResult().getResponseBody();
+		assertEquals(List.of(0L, 1L, 2L), resultados.stream().map(ResultadoLote::getIndice).toList());
+		assertEquals(201, resultados.get(0).getEstado());
+		assertEquals(400, resultados.get(1).getEstado());
+		assertNull(resultados.get(1).getId());
+		assertEquals(201, resultados.get(2).getEstado());
+
+		webTestClient.method(HttpMethod.DELETE).uri("/api/pedidos/lote")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.bodyValue(List.of(resultados.get(0).getId(), resultados.get(2).getId()))
+				.exchange()
+				.expectStatus().isOk();
+	}
+
+	@Test
+	void metricasPrometheusSinAutenticacion() {
+		webTestClient.get().uri("/api/productos/1")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk();
+
+		// Con los histogramas de percentiles la salida supera el límite por defecto de 256 KB
+		String metricas = webTestClient.mutate()
+				.codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+				.build()
+				.get().uri("/actuator/prometheus")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class)
+				.returnResult().getResponseBody();
+		assertTrue(metricas.contains("http_server_requests_seconds_bucket"));
+		assertTrue(metricas.contains("locale=\"es\""));
+		assertTrue(metricas.contains("\napi_productos_almacenados "));
+		assertTrue(metricas.contains("api_autenticaciones_total{mecanismo=\"basic\",resultado=\"exito\"}"));
+	}
+
+	@Test
+	void catalogoRespondeNoModificadoConElMismoETag() {
+		String etag = webTestClient.get().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-cache, private")
+				.expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE)
+				.expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+				.returnResult(String.class).getResponseHeaders().getETag();
+
+		webTestClient.get().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.exchange()
+				.expectStatus().isNotModified()
+				.expectBody().isEmpty();
+
+		webTestClient.get().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.exchange()
+				.expectStatus().isOk();
+
+		webTestClient.put().uri("/api/productos/3")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.bodyValue(new Producto(null, "Nike Air Max", 79.99))
+				.exchange()
+				.expectStatus().isOk();
+
+		webTestClient.get().uri("/api/productos/1")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "es")
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Producto.class).value(producto -> assertEquals("iPhone 14", producto.getNombre()));
+	}
+
+	@Test
+	void listadoEnCacheSeInvalidaAlEscribir() {
+		for (int i = 0; i < 2; i++) {
+			webTestClient.get().uri("/api/productos?limit=1")
+					.headers(h -> h.setBasicAuth("admin", "admin123"))
+					.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+					.exchange()
+					.expectStatus().isOk()
+					.expectHeader().contentType(MediaType.APPLICATION_JSON)
+					.expectHeader().valueEquals("X-Siguiente-Cursor", "1")
+					.expectBodyList(Producto.class).hasSize(1);
+		}
+		int antes = webTestClient.get().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.exchange()
+				.expectBodyList(Producto.class)
+				.returnResult().getResponseBody().size();
+
+		Producto creado = webTestClient.post().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.bodyValue(new Producto(null, "Casque", 59.99))
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Producto.class).returnResult().getResponseBody();
+
+		webTestClient.get().uri("/api/productos")
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(Producto.class).hasSize(antes + 1);
+
+		// El catálogo es el mismo en todos los idiomas: se elimina para no cambiar los listados de las demás pruebas
+		webTestClient.delete().uri("/api/productos/" + creado.getId())
+				.headers(h -> h.setBasicAuth("admin", "admin123"))
+				.exchange()
+				.expectStatus().isNoContent();
+	}
+}
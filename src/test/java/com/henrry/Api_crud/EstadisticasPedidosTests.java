@@ -0,0 +1,56 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Models.EstadisticasPedidos;
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.ResumenPedidos;
+import com.henrry.Api_crud.Persistence.RegistroCambios;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EstadisticasPedidosTests {
+
+	private static final Locale ES = Locale.forLanguageTag("es");
+
+	private final PedidoService pedidoService = new PedidoService(
+			new ConversionMonedaService(new ClassPathResource("tasas-cambio.properties"), evento -> { }),
+			new ProductoService(RegistroCambios.ninguno()), RegistroCambios.ninguno());
+
+	@Test
+	void losTotalesSeMantienenConCadaEscritura() {
+		EstadisticasPedidos inicial = pedidoService.estadisticas(ES, 10).block();
+		assertEquals(3, inicial.getTotal().getPedidos());
+		assertEquals(6, inicial.getTotal().getUnidades());
+		assertEquals(349.97, inicial.getTotal().getImporte());
+
+		pedidoService.agregarPedido(new Pedido(null, "Cliente 1", "Producto 3", 1, 50.0), ES).block();
+		pedidoService.actualizarPedido(new Pedido(2L, "Cliente 2", "Producto 2", 2, 199.99), ES).block();
+		pedidoService.eliminarPedido(3L, ES).block();
+
+		EstadisticasPedidos estadisticas = pedidoService.estadisticas(ES, 2).block();
+		assertEquals(3, estadisticas.getTotal().getPedidos());
+		assertEquals(5, estadisticas.getTotal().getUnidades());
+		assertEquals(349.98, estadisticas.getTotal().getImporte());
+		assertEquals(List.of("Cliente 2", "Cliente 1"), estadisticas.getClientes().stream().map(ResumenPedidos::getNombre).toList());
+		assertEquals(199.99, estadisticas.getClientes().get(0).getImporte());
+
+		ResumenPedidos producto3 = pedidoService.estadisticasProducto("Producto 3", ES).block();
+		assertEquals(1, producto3.getPedidos());
+		assertEquals(50.0, producto3.getImporte());
+		assertNull(pedidoService.estadisticasCliente("Cliente 3", ES).block());
+	}
+
+	@Test
+	void losImportesSeConviertenALaMonedaDelIdioma() {
+		// 349.97 EUR a 1.18 USD por euro
+		assertEquals(412.96, pedidoService.estadisticas(Locale.ENGLISH, 10).block().getTotal().getImporte());
+	}
+}
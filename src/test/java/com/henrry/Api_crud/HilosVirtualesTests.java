@@ -0,0 +1,95 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Config.CachingReactiveAuthenticationManager;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import com.henrry.Api_crud.Service.ProductoService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Solo se ejecuta con el perfil java21 (mvn -Pjava21 test), que pone boundedElastic y las tareas
+ * programadas en hilos virtuales. Graba con JFR el evento jdk.VirtualThreadPinned mientras corre el
+ * trabajo que se saca del event loop: un hilo virtual que bloquea dentro de un bloque synchronized
+ * queda fijado a su hilo de plataforma y la prueba falla mostrando dónde.
+ */
+@SpringBootTest
+class HilosVirtualesTests {
+
+	@Autowired
+	private CachingReactiveAuthenticationManager authenticationManager;
+
+	@Autowired
+	private ProductoService productoService;
+
+	@Autowired
+	private ConversionMonedaService conversionMoneda;
+
+	@Autowired
+	private TaskScheduler taskScheduler;
+
+	@TempDir
+	Path directorio;
+
+	@BeforeAll
+	static void soloConHilosVirtuales() {
+		assumeTrue(Runtime.version().feature() >= 21
+				&& Boolean.getBoolean("reactor.schedulers.defaultBoundedElasticOnVirtualThreads"));
+	}
+
+	@Test
+	void elTrabajoBloqueanteCorreEnHilosVirtualesSinFijarlos() throws Exception {
+		assertTrue(Mono.fromCallable(() -> Thread.currentThread().getName())
+				.subscribeOn(Schedulers.boundedElastic())
+				.block()
+				.startsWith("loomBoundedElastic"));
+		assertInstanceOf(SimpleAsyncTaskScheduler.class, taskScheduler);
+
+		Path archivo = directorio.resolve("fijados.jfr");
+		try (Recording grabacion = new Recording()) {
+			grabacion.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+			grabacion.start();
+
+			// Las contraseñas incorrectas no se guardan en la caché: cada una pasa por BCrypt
+			Flux.range(0, 32)
+					.flatMap(i -> authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("admin", "incorrecta" + i))
+							.onErrorResume(error -> Mono.empty()))
+					.blockLast(Duration.ofSeconds(60));
+			Flux.range(0, 256)
+					.flatMap(i -> Mono.defer(() -> productoService.agregarProducto(new Producto(null, "Producto " + i, 1.0), Locale.ENGLISH))
+							.subscribeOn(Schedulers.boundedElastic()))
+					.blockLast(Duration.ofSeconds(60));
+			Mono.fromRunnable(conversionMoneda::recargarSiCambio)
+					.subscribeOn(Schedulers.boundedElastic())
+					.block(Duration.ofSeconds(10));
+
+			grabacion.stop();
+			grabacion.dump(archivo);
+		}
+
+		List<RecordedEvent> fijados = RecordingFile.readAllEvents(archivo);
+		assertEquals(List.of(), fijados.stream().map(evento -> String.valueOf(evento.getStackTrace())).toList());
+	}
+}
@@ -0,0 +1,74 @@
+package com.henrry.Api_crud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henrry.Api_crud.Controllers.Idempotencia;
+import com.henrry.Api_crud.Models.Pedido;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IdempotenciaTests {
+
+	private final Idempotencia idempotencia = new Idempotencia(new ObjectMapper(), new SimpleMeterRegistry(), Duration.ofMinutes(5), 100);
+
+	private final AtomicInteger ejecuciones = new AtomicInteger();
+
+	@Test
+	void losDuplicadosEnCursoEsperanLaMismaRespuesta() {
+		Sinks.One<ResponseEntity<String>> resultado = Sinks.one();
+		Mono<ResponseEntity<String>> primera = ejecutar("admin", "llave", new Pedido(null, "Cliente", "Producto", 1, 1.0), resultado.asMono());
+		Mono<ResponseEntity<String>> segunda = ejecutar("admin", "llave", new Pedido(null, "Cliente", "Producto", 1, 1.0), Mono.never());
+		Sinks.Many<ResponseEntity<String>> recibidas = Sinks.many().replay().all();
+		primera.subscribe(recibidas::tryEmitNext);
+		segunda.subscribe(recibidas::tryEmitNext);
+
+		resultado.tryEmitValue(ResponseEntity.status(HttpStatus.CREATED).body("creado"));
+		var respuestas = recibidas.asFlux().take(2).collectList().block(Duration.ofSeconds(5));
+		assertEquals(1, ejecuciones.get());
+		assertNull(respuestas.get(0).getHeaders().getFirst(Idempotencia.REPETIDA));
+		assertEquals("true", respuestas.get(1).getHeaders().getFirst(Idempotencia.REPETIDA));
+		assertEquals("creado", respuestas.get(1).getBody());
+
+		// Más tarde se responde con lo guardado; otro usuario con la misma llave tiene la suya
+		assertEquals(HttpStatus.CREATED, ejecutar("admin", "llave", new Pedido(null, "Cliente", "Producto", 1, 1.0), Mono.never())
+				.block().getStatusCode());
+		assertEquals(1, ejecuciones.get());
+		ejecutar("otro", "llave", new Pedido(null, "Cliente", "Producto", 1, 1.0), Mono.just(ResponseEntity.ok("otro"))).block();
+		assertEquals(2, ejecuciones.get());
+	}
+
+	@Test
+	void unaLlaveConOtraSolicitudSeRechaza() {
+		ejecutar("admin", "llave", new Pedido(null, "Cliente", "Producto", 1, 1.0), Mono.just(ResponseEntity.ok("creado"))).block();
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ejecutar("admin", "llave", new Pedido(null, "Cliente", "Producto", 2, 1.0),
+				Mono.just(ResponseEntity.ok("otro"))).block().getStatusCode());
+		assertEquals(1, ejecuciones.get());
+	}
+
+	@Test
+	void unFalloLiberaLaLlave() {
+		Pedido pedido = new Pedido(null, "Cliente", "Producto", 1, 1.0);
+		ejecutar("admin", "llave", pedido, Mono.<ResponseEntity<String>>error(new IllegalStateException("caído")))
+				.onErrorResume(error -> Mono.empty()).block();
+		ejecutar("admin", "llave", pedido, Mono.just(ResponseEntity.badRequest().build())).block();
+		assertEquals(HttpStatus.CREATED, ejecutar("admin", "llave", pedido, Mono.just(ResponseEntity.status(HttpStatus.CREATED).body("creado")))
+				.block().getStatusCode());
+		assertEquals(3, ejecuciones.get());
+	}
+
+	private Mono<ResponseEntity<String>> ejecutar(String usuario, String llave, Pedido pedido, Mono<ResponseEntity<String>> respuesta) {
+		return idempotencia.ejecutar(usuario, "POST /api/pedidos", llave, pedido, () -> {
+			ejecuciones.incrementAndGet();
+			return respuesta;
+		});
+	}
+}
@@ -0,0 +1,135 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Config.LimitesSolicitudes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimitesSolicitudesTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void cadaIpTieneSuPropioCubo() {
+		WebFilter filtro = limites(new LimitesSolicitudes.Concurrencia(10, 1, 10, Duration.ofMinutes(1))).antesDeAutenticar();
+
+		assertNull(filtrar(filtro, "10.0.0.1", Mono.empty()).getResponse().getStatusCode());
+		assertNull(filtrar(filtro, "10.0.0.1", Mono.empty()).getResponse().getStatusCode());
+		MockServerWebExchange rechazada = filtrar(filtro, "10.0.0.1", Mono.empty());
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, rechazada.getResponse().getStatusCode());
+		assertEquals("1", rechazada.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+		assertNull(filtrar(filtro, "10.0.0.2", Mono.empty()).getResponse().getStatusCode());
+		assertEquals(1.0, registry.get("api.solicitudes.rechazadas").tag("motivo", "ip").counter().count());
+	}
+
+	@Test
+	void cadaUsuarioTieneSuPropioCubo() {
+		WebFilter filtro = limites(new LimitesSolicitudes.Concurrencia(10, 1, 10, Duration.ofMinutes(1))).despuesDeAutenticar();
+		UsernamePasswordAuthenticationToken admin = UsernamePasswordAuthenticationToken.authenticated("admin", null,
+				AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+
+		for (int i = 0; i < 2; i++) {
+			MockServerWebExchange exchange = exchange("10.0.0." + i);
+			filtro.filter(exchange, e -> Mono.empty()).contextWrite(ReactiveSecurityContextHolder.withAuthentication(admin)).block();
+			assertNull(exchange.getResponse().getStatusCode());
+		}
+		// Cambiar de IP no le da más solicitudes al mismo usuario
+		MockServerWebExchange rechazada = exchange("10.0.0.9");
+		filtro.filter(rechazada, e -> Mono.empty()).contextWrite(ReactiveSecurityContextHolder.withAuthentication(admin)).block();
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, rechazada.getResponse().getStatusCode());
+
+		// Sin autenticar solo cuenta el límite de la IP
+		assertNull(filtrar(filtro, "10.0.0.9", Mono.empty()).getResponse().getStatusCode());
+	}
+
+	@Test
+	void rechazaSinEsperarCuandoElLimiteDeSolicitudesEnCursoEstaLleno() {
+		WebFilter filtro = limites(new LimitesSolicitudes.Concurrencia(1, 1, 10, Duration.ofMinutes(1))).antesDeAutenticar();
+		Sinks.Empty<Void> respuesta = Sinks.empty();
+		filtro.filter(exchange("10.0.0.1"), e -> respuesta.asMono()).subscribe();
+
+		MockServerWebExchange rechazada = filtrar(filtro, "10.0.0.2", Mono.empty());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rechazada.getResponse().getStatusCode());
+		assertEquals("1", rechazada.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+		respuesta.tryEmitEmpty();
+		assertNull(filtrar(filtro, "10.0.0.2", Mono.empty()).getResponse().getStatusCode());
+	}
+
+	@Test
+	void losEndpointsDeActuatorNoTienenLimite() {
+		WebFilter filtro = limites(new LimitesSolicitudes.Concurrencia(1, 1, 10, Duration.ofMinutes(1))).antesDeAutenticar();
+		Sinks.Empty<Void> respuesta = Sinks.empty();
+		filtro.filter(exchange("10.0.0.1"), e -> respuesta.asMono()).subscribe();
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, filtrar(filtro, "10.0.0.2", Mono.empty()).getResponse().getStatusCode());
+
+		// Ni el límite de solicitudes en curso ni el cubo de la IP
+		for (int i = 0; i < 5; i++) {
+			MockServerWebExchange metricas = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/prometheus")
+					.remoteAddress(new InetSocketAddress("10.0.0.1", 40000)));
+			filtro.filter(metricas, e -> Mono.empty()).block(Duration.ofSeconds(5));
+			assertNull(metricas.getResponse().getStatusCode());
+		}
+		respuesta.tryEmitEmpty();
+	}
+
+	@Test
+	void elLimiteBajaConRespuestasLentasYSubeConRapidas() throws InterruptedException {
+		WebFilter filtro = limites(new LimitesSolicitudes.Concurrencia(10, 1, 20, Duration.ofMillis(50))).antesDeAutenticar();
+
+		// Se completa desde este hilo, para que el límite ya esté ajustado al volver de tryEmitEmpty
+		Sinks.Empty<Void> lenta = Sinks.empty();
+		filtro.filter(exchange("10.0.0.1"), e -> lenta.asMono()).subscribe();
+		Thread.sleep(100);
+		lenta.tryEmitEmpty();
+		assertEquals(9.0, limite(), 1e-9);
+		filtrar(filtro, "10.0.0.2", Mono.empty());
+		assertEquals(9.0, limite(), 1e-9);
+
+		// Solo sube mientras al menos la mitad del límite está ocupada
+		Sinks.Empty<Void> lentas = Sinks.empty();
+		for (int i = 0; i < 4; i++) {
+			filtro.filter(exchange("10.0.1." + i), e -> lentas.asMono()).subscribe();
+		}
+		filtrar(filtro, "10.0.0.3", Mono.empty());
+		assertTrue(limite() > 9.0);
+		lentas.tryEmitEmpty();
+	}
+
+	private LimitesSolicitudes limites(LimitesSolicitudes.Concurrencia concurrencia) {
+		return new LimitesSolicitudes(new LimitesSolicitudes.Cuota(1, 2, 100), new LimitesSolicitudes.Cuota(1, 2, 100),
+				concurrencia, registry);
+	}
+
+	private double limite() {
+		return registry.get("api.solicitudes.limite").gauge().value();
+	}
+
+	private static MockServerWebExchange filtrar(WebFilter filtro, String ip, Mono<Void> respuesta) {
+		MockServerWebExchange exchange = exchange(ip);
+		filtro.filter(exchange, e -> respuesta).block(Duration.ofSeconds(5));
+		return exchange;
+	}
+
+	private static MockServerWebExchange exchange(String ip) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/api/pedidos")
+				.remoteAddress(new InetSocketAddress(ip, 40000)));
+	}
+}
@@ -0,0 +1,99 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Service.ConflictoVersionException;
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ejecuta las operaciones de los servicios en hilos no bloqueantes de Reactor.
+ * BlockHound se instala automáticamente (blockhound-junit-platform) y hace fallar
+ * la prueba si alguna operación bloquea el hilo.
+ */
+@SpringBootTest
+class OperacionesNoBloqueantesTests {
+
+	@Autowired
+	private ProductoService productoService;
+
+	@Autowired
+	private PedidoService pedidoService;
+
+	@Test
+	void blockHoundEstaActivo() {
+		StepVerifier.create(Mono.delay(Duration.ofMillis(1))
+						.doOnNext(it -> {
+							try {
+								Thread.sleep(1);
+							} catch (InterruptedException e) {
+								throw new RuntimeException(e);
+							}
+						}))
+				.expectError(BlockingOperationError.class)
+				.verify();
+	}
+
+	@Test
+	void actualizarProductoNoBloquea() {
+		Producto cambios = new Producto(3L, "Nike Air Max", 89.99);
+		StepVerifier.create(productoService.actualizarProducto(cambios, Locale.FRENCH)
+						.subscribeOn(Schedulers.parallel()))
+				.expectNextMatches(p -> p.getPrecio() == 89.99)
+				.verifyComplete();
+	}
+
+	@Test
+	void actualizarProductoInexistenteTerminaVacio() {
+		StepVerifier.create(productoService.actualizarProducto(new Producto(999L, "x", 1.0), Locale.FRENCH)
+						.subscribeOn(Schedulers.parallel()))
+				.verifyComplete();
+	}
+
+	@Test
+	void actualizarPedidoNoBloquea() {
+		Pedido cambios = new Pedido(2L, "Client 2", "Produit 2", 4, 50.0);
+		StepVerifier.create(pedidoService.actualizarPedido(cambios, Locale.FRENCH)
+						.subscribeOn(Schedulers.parallel()))
+				.expectNextMatches(p -> p.getCantidad() == 4)
+				.verifyComplete();
+	}
+
+	@Test
+	void actualizacionesConcurrentesDeLaMismaVersionSoloGanaUna() {
+		long version = productoService.obtenerProductoPorId(1L, Locale.ENGLISH).block().getVersion();
+		StepVerifier.create(Flux.range(0, 16)
+						.flatMap(i -> productoService.actualizarProducto(new Producto(1L, "iPhone 14", 900.0 + i), Locale.ENGLISH, version)
+								.map(actualizado -> true)
+								.onErrorResume(ConflictoVersionException.class, e -> Mono.just(false))
+								.subscribeOn(Schedulers.parallel()))
+						.filter(gano -> gano)
+						.count())
+				.expectNext(1L)
+				.verifyComplete();
+		assertEquals(version + 1, productoService.obtenerProductoPorId(1L, Locale.ENGLISH).block().getVersion());
+	}
+
+	@Test
+	void listarYObtenerNoBloquean() {
+		StepVerifier.create(productoService.listarProductos(Locale.FRENCH)
+						.thenMany(pedidoService.listarPedidos(Locale.FRENCH))
+						.then(pedidoService.obtenerPedidoPorId(1L, Locale.FRENCH))
+						.subscribeOn(Schedulers.parallel()))
+				.expectNextCount(1)
+				.verifyComplete();
+	}
+}
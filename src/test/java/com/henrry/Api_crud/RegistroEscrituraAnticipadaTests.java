@@ -0,0 +1,255 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Persistence.EstadoAlmacen;
+import com.henrry.Api_crud.Persistence.RegistroEscrituraAnticipada;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import com.henrry.Api_crud.Service.RevisionCatalogo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegistroEscrituraAnticipadaTests {
+
+	@TempDir
+	Path directorio;
+
+	@Test
+	void recuperaElUltimoEstadoTrasReiniciar() throws IOException {
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			assertTrue(registro.vacio());
+			registro.guardar("a", 1, new byte[]{1});
+			registro.guardar("a", 2, new byte[]{2});
+			registro.guardar("a", 2, new byte[]{3});
+			registro.eliminar("a", 1);
+			registro.guardar("b", 5, new byte[]{5}).join();
+		}
+
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			assertFalse(registro.vacio());
+			EstadoAlmacen a = registro.recuperar("a");
+			assertEquals(List.of(2L), List.copyOf(a.entidades().keySet()));
+			assertArrayEquals(new byte[]{3}, a.entidades().get(2L));
+			assertEquals(2, a.ultimoId());
+			assertEquals(5, registro.recuperar("b").ultimoId());
+		}
+	}
+
+	@Test
+	void compactaLosSegmentosEnUnaInstantanea() throws IOException {
+		try (RegistroEscrituraAnticipada registro = abrir(4096)) {
+			for (long id = 1; id <= 1000; id++) {
+				registro.guardar("a", id % 100, new byte[]{(byte) id});
+			}
+			registro.compactar().join();
+			registro.guardar("a", 7, new byte[]{42}).join();
+		}
+		assertEquals(1, contar(".snap"));
+		assertEquals(1, contar(".wal"));
+
+		try (RegistroEscrituraAnticipada registro = abrir(4096)) {
+			EstadoAlmacen a = registro.recuperar("a");
+			assertEquals(100, a.entidades().size());
+			assertArrayEquals(new byte[]{42}, a.entidades().get(7L));
+			assertArrayEquals(new byte[]{(byte) 1000}, a.entidades().get(0L));
+			assertEquals(99, a.ultimoId());
+		}
+	}
+
+	@Test
+	void descartaUnaEscrituraInterrumpidaAlFinal() throws IOException {
+		try (RegistroEscrituraAnticipada registro = abrir(4096)) {
+			registro.guardar("a", 1, new byte[]{1, 2, 3});
+			registro.guardar("a", 2, new byte[]{4, 5, 6}).join();
+		}
+		// Cada registro ocupa 8 (largo y crc) + 1 (tipo) + 2 + 1 (almacén) + 8 (id) + 3 (datos) = 23 bytes
+		try (FileChannel segmento = FileChannel.open(archivos(".wal").get(0), StandardOpenOption.WRITE)) {
+			segmento.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 9, 9, 9, 9}), 46);
+		}
+
+		try (RegistroEscrituraAnticipada registro = abrir(4096)) {
+			assertEquals(2, registro.recuperar("a").entidades().size());
+			registro.guardar("a", 3, new byte[]{7}).join();
+			registro.compactar().join();
+		}
+		try (RegistroEscrituraAnticipada registro = abrir(4096)) {
+			assertEquals(3, registro.recuperar("a").entidades().size());
+		}
+	}
+
+	@Test
+	void dejaDeAceptarEscriturasSiFallaAlRotar() throws IOException {
+		Path carpeta = directorio.resolve("wal");
+		try (RegistroEscrituraAnticipada registro = new RegistroEscrituraAnticipada(carpeta, 4096, 1000, Duration.ofHours(1))) {
+			registro.guardar("a", 1, new byte[100]).join();
+			// Sin la carpeta no se puede crear el segmento siguiente
+			try (Stream<Path> archivos = Files.list(carpeta)) {
+				for (Path archivo : archivos.toList()) {
+					Files.delete(archivo);
+				}
+			}
+			Files.delete(carpeta);
+
+			CompletableFuture<Void> noCabe = registro.guardar("a", 2, new byte[4000]);
+			assertThrows(CompletionException.class, noCabe::join);
+			assertThrows(CompletionException.class, () -> registro.guardar("a", 3, new byte[]{3}).join());
+		}
+	}
+
+	@Test
+	void losFuturosSeCompletanFueraDelHiloEscritor() throws IOException {
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			String hilo = registro.guardar("a", 1, new byte[]{1})
+					.thenApply(listo -> Thread.currentThread().getName())
+					.join();
+			assertNotEquals("wal-escritor", hilo);
+		}
+	}
+
+	@Test
+	void losCambiosQueNoLleganAlRegistroSeDeshacenEnMemoria() throws IOException {
+		Path carpeta = directorio.resolve("wal");
+		try (RegistroEscrituraAnticipada registro = new RegistroEscrituraAnticipada(carpeta, 4096, 1000, Duration.ofHours(1))) {
+			ProductoService productos = new ProductoService(registro);
+			registro.guardar("a", 1, new byte[100]).join();
+			RevisionCatalogo antes = productos.revision();
+			try (Stream<Path> archivos = Files.list(carpeta)) {
+				for (Path archivo : archivos.toList()) {
+					Files.delete(archivo);
+				}
+			}
+			Files.delete(carpeta);
+			assertThrows(CompletionException.class, () -> registro.guardar("a", 2, new byte[4000]).join());
+
+			assertThrows(IllegalStateException.class,
+					() -> productos.actualizarProducto(new Producto(1L, "Teléfono", 1.0), Locale.forLanguageTag("es")).block());
+			assertThrows(IllegalStateException.class,
+					() -> productos.agregarProducto(new Producto(null, "Reloj", 199.0), Locale.forLanguageTag("es")).block());
+			assertThrows(IllegalStateException.class, () -> productos.eliminarProducto(2L, Locale.ENGLISH).block());
+
+			Producto iphone = productos.obtenerProductoPorId(1L, Locale.forLanguageTag("es")).block();
+			assertEquals("iPhone 14", iphone.getNombre());
+			assertEquals(1L, iphone.getVersion());
+			assertEquals(3, productos.contarProductos());
+			assertEquals(List.of(1L, 2L, 3L),
+					productos.listarProductos(Locale.ENGLISH).map(Producto::getId).collectList().block());
+			assertTrue(productos.buscarProductos("telefono", Locale.forLanguageTag("es"), null, 10).collectList().block().isEmpty());
+			assertEquals(List.of(2L), productos.buscarProductos("samsung", Locale.ENGLISH, null, 10)
+					.map(Producto::getId).collectList().block());
+			assertNotEquals(antes, productos.revision());
+		}
+	}
+
+	@Test
+	void laRevisionDelCatalogoNoSeRepiteTrasReiniciar() throws IOException {
+		RevisionCatalogo antes;
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			antes = new ProductoService(registro).revision();
+		}
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			RevisionCatalogo despues = new ProductoService(registro).revision();
+			// El número vuelve a empezar al reiniciar; la época no se repite, así que un ETag anterior no coincide
+			assertNotEquals(antes.epoca(), despues.epoca());
+		}
+	}
+
+	@Test
+	void losServiciosRecuperanSusDatosSinRepetirIds() throws IOException {
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			ProductoService productos = new ProductoService(registro);
+			PedidoService pedidos = new PedidoService(conversionMoneda(), productos, registro);
+			productos.agregarProducto(new Producto(null, "Casque", 59.99), Locale.FRENCH).block();
+			productos.eliminarProducto(3L, Locale.FRENCH).block();
+			pedidos.agregarPedido(new Pedido(null, "Client 4", "Produit 4", 2, 10.80), Locale.FRENCH).block();
+			Pedido enlazado = new Pedido(null, "Client 5", null, 2, 0);
+			enlazado.setProductoId(1L);
+			pedidos.agregarPedido(enlazado, Locale.FRENCH).block();
+		}
+
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			ProductoService productos = new ProductoService(registro);
+			PedidoService pedidos = new PedidoService(conversionMoneda(), productos, registro);
+			assertEquals(List.of("iPhone 14", "Téléviseur Samsung", "Casque"),
+					productos.listarProductos(Locale.FRENCH).map(Producto::getNombre).collectList().block());
+			assertEquals(3, productos.contarProductos());
+			assertEquals(5L, productos.agregarProducto(new Producto(null, "Montre", 199.0), Locale.FRENCH).block().getId());
+
+			Pedido recuperado = pedidos.obtenerPedidoPorId(4L, Locale.FRENCH).block();
+			assertEquals("Client 4", recuperado.getCliente());
+			assertEquals(10.80, recuperado.getPrecioTotal());
+			Pedido enlazado = pedidos.obtenerPedidoPorId(5L, Locale.FRENCH).block();
+			assertEquals(1L, enlazado.getProductoId());
+			assertEquals("iPhone 14", enlazado.getProducto());
+			// 999.99 € × 2 en la moneda del francés (1.08)
+			assertEquals(2159.98, enlazado.getPrecioTotal());
+		}
+	}
+
+	@Test
+	void lasTraduccionesSeGuardanConSuEntidad() throws IOException {
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			ProductoService productos = new ProductoService(registro);
+			new PedidoService(conversionMoneda(), productos, registro);
+			productos.actualizarProducto(new Producto(1L, "Teléfono iPhone", 949.99), Locale.forLanguageTag("es")).block();
+		}
+
+		try (RegistroEscrituraAnticipada registro = abrir(1 << 20)) {
+			ProductoService productos = new ProductoService(registro);
+			PedidoService pedidos = new PedidoService(conversionMoneda(), productos, registro);
+			Producto es = productos.obtenerProductoPorId(1L, Locale.forLanguageTag("es")).block();
+			Producto en = productos.obtenerProductoPorId(1L, Locale.ENGLISH).block();
+			assertEquals("Teléfono iPhone", es.getNombre());
+			assertEquals("iPhone 14", en.getNombre());
+			assertEquals(949.99, en.getPrecio());
+			assertEquals(2L, en.getVersion());
+			assertEquals(List.of(1L), productos.buscarProductos("telefono", Locale.forLanguageTag("es"), null, 10)
+					.map(Producto::getId).collectList().block());
+
+			assertEquals("Cliente 1", pedidos.obtenerPedidoPorId(1L, Locale.forLanguageTag("es")).block().getCliente());
+			Pedido pedido = pedidos.obtenerPedidoPorId(1L, Locale.ENGLISH).block();
+			assertEquals("Customer 1", pedido.getCliente());
+			assertEquals(117.99, pedido.getPrecioTotal());
+		}
+	}
+
+	private RegistroEscrituraAnticipada abrir(int tamanoSegmento) throws IOException {
+		return new RegistroEscrituraAnticipada(directorio, tamanoSegmento, 1000, Duration.ofHours(1));
+	}
+
+	private static ConversionMonedaService conversionMoneda() {
+		return new ConversionMonedaService(new ClassPathResource("tasas-cambio.properties"), evento -> { });
+	}
+
+	private long contar(String extension) throws IOException {
+		return archivos(extension).size();
+	}
+
+	private List<Path> archivos(String extension) throws IOException {
+		try (Stream<Path> archivos = Files.list(directorio)) {
+			return archivos.filter(archivo -> archivo.toString().endsWith(extension)).sorted().toList();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.henrry.Api_crud;
+
+import com.henrry.Api_crud.Models.Pedido;
+import com.henrry.Api_crud.Models.Producto;
+import com.henrry.Api_crud.Persistence.EstadoAlmacen;
+import com.henrry.Api_crud.Persistence.RegistroR2dbc;
+import com.henrry.Api_crud.Service.ConversionMonedaService;
+import com.henrry.Api_crud.Service.PedidoService;
+import com.henrry.Api_crud.Service.ProductoService;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.R2dbcTransientResourceException;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.ClassPathResource;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegistroR2dbcTests {
+
+	// DB_CLOSE_DELAY=-1 mantiene la base en memoria entre conexiones, como si fuera un servidor
+	private final ConnectionFactory conexiones = new ConnectionPool(ConnectionPoolConfiguration.builder(
+			ConnectionFactories.get("r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1"))
+			.maxSize(4)
+			.build());
+
+	@Test
+	void recuperaElUltimoEstadoTrasReiniciar() {
+		try (RegistroR2dbc registro = abrir()) {
+			assertTrue(registro.vacio());
+			registro.guardar("a", 1, new byte[]{1});
+			registro.guardar("a", 2, new byte[]{2});
+			registro.guardar("a", 2, new byte[]{3});
+			registro.eliminar("a", 1);
+			registro.guardar("b", 5, new byte[]{5});
+			registro.eliminar("b", 5).join();
+		}
+
+		try (RegistroR2dbc registro = abrir()) {
+			assertFalse(registro.vacio());
+			EstadoAlmacen a = registro.recuperar("a");
+			assertEquals(List.of(2L), List.copyOf(a.entidades().keySet()));
+			assertArrayEquals(new byte[]{3}, a.entidades().get(2L));
+			assertEquals(2, a.ultimoId());
+			EstadoAlmacen b = registro.recuperar("b");
+			assertTrue(b.entidades().isEmpty());
+			assertEquals(5, b.ultimoId());
+		}
+	}
+
+	@Test
+	void escribeMuchosCambiosPorLotes() {
+		try (RegistroR2dbc registro = abrir()) {
+			CompletableFuture.allOf(IntStream.rangeClosed(1, 5000)
+					.mapToObj(id -> registro.guardar("a", id % 1000, new byte[]{(byte) id}))
+					.toArray(CompletableFuture[]::new)).join();
+		}
+
+		try (RegistroR2dbc registro = abrir()) {
+			EstadoAlmacen a = registro.recuperar("a");
+			assertEquals(1000, a.entidades().size());
+			assertArrayEquals(new byte[]{(byte) 5000}, a.entidades().get(0L));
+			assertEquals(999, a.ultimoId());
+		}
+	}
+
+	@Test
+	void reintentaUnLoteQueFalla() {
+		AtomicInteger conexionesPedidas = new AtomicInteger();
+		ConnectionFactory fallaElPrimerLote = new ConnectionFactory() {
+			@Override
+			public Publisher<? extends Connection> create() {
+				// La primera conexión es la de la recuperación; la segunda, la del primer lote
+				return conexionesPedidas.incrementAndGet() == 2
+						? Mono.error(new R2dbcTransientResourceException("La base no responde")) : conexiones.create();
+			}
+
+			@Override
+			public ConnectionFactoryMetadata getMetadata() {
+				return conexiones.getMetadata();
+			}
+		};
+		try (RegistroR2dbc registro = new RegistroR2dbc(fallaElPrimerLote, 100, Duration.ofSeconds(10))) {
+			CompletableFuture<Void> primero = registro.guardar("a", 1, new byte[]{1});
+			CompletableFuture<Void> segundo = registro.guardar("a", 1, new byte[]{2});
+			CompletableFuture.allOf(primero, segundo).join();
+		}
+		assertTrue(conexionesPedidas.get() > 2);
+
+		try (RegistroR2dbc registro = abrir()) {
+			assertArrayEquals(new byte[]{2}, registro.recuperar("a").entidades().get(1L));
+		}
+	}
+
+	@Test
+	void unCambioQueNuncaSeGuardaraNoBloqueaALosDemas() {
+		try (RegistroR2dbc registro = abrir()) {
+			// El nombre del almacén no cabe en la columna: la base lo rechaza en cada intento
+			CompletableFuture<Void> invalido = registro.guardar("x".repeat(100), 1, new byte[]{1});
+			CompletableFuture<Void> valido = registro.guardar("a", 1, new byte[70_000]);
+			assertThrows(ExecutionException.class, () -> invalido.get(10, TimeUnit.SECONDS));
+			assertDoesNotThrow(() -> valido.get(10, TimeUnit.SECONDS));
+			assertDoesNotThrow(() -> registro.guardar("a", 2, new byte[]{2}).get(10, TimeUnit.SECONDS));
+		}
+
+		try (RegistroR2dbc registro = abrir()) {
+			EstadoAlmacen a = registro.recuperar("a");
+			assertEquals(70_000, a.entidades().get(1L).length);
+			assertEquals(2, a.entidades().size());
+		}
+	}
+
+	@Test
+	void losServiciosRecuperanSusDatosDeLaBase() {
+		try (RegistroR2dbc registro = abrir()) {
+			ProductoService productos = new ProductoService(registro);
+			PedidoService pedidos = new PedidoService(conversionMoneda(), productos, registro);
+			productos.agregarProducto(new Producto(null, "Auriculares", 59.99), Locale.ENGLISH).block();
+			productos.eliminarProducto(1L, Locale.ENGLISH).block();
+			pedidos.agregarPedido(new Pedido(null, "Client 4", "Product 4", 2, 10.0), Locale.ENGLISH).block();
+		}
+
+		try (RegistroR2dbc registro = abrir()) {
+			ProductoService productos = new ProductoService(registro);
+			PedidoService pedidos = new PedidoService(conversionMoneda(), productos, registro);
+			assertEquals(List.of("Samsung TV", "Nike Air Max", "Auriculares"),
+					productos.listarProductos(Locale.ENGLISH).map(Producto::getNombre).collectList().block());
+			assertEquals(5L, productos.agregarProducto(new Producto(null, "Watch", 199.0), Locale.ENGLISH).block().getId());
+			assertEquals("Client 4", pedidos.obtenerPedidoPorId(4L, Locale.ENGLISH).block().getCliente());
+		}
+	}
+
+	private RegistroR2dbc abrir() {
+		return new RegistroR2dbc(conexiones, 100, Duration.ofSeconds(10));
+	}
+
+	private static ConversionMonedaService conversionMoneda() {
+		return new ConversionMonedaService(new ClassPathResource("tasas-cambio.properties"), evento -> { });
+	}
+}